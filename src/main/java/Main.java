@@ -1,14 +1,59 @@
+import com.lowagie.text.Chunk;
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Font;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PdfWriter;
+import dao.AccountDao;
+import dao.AppUserDao;
 import dao.BankDao;
+import dao.MoneyOperation;
+import entity.Account;
+import entity.AppUser;
+import entity.TransactionType;
+import exception.AccountBusyException;
 import exception.InsufficientFundsException;
 import exception.NoSuchAccountFoundException;
 import exception.NoSuchBankFoundException;
 import exception.NoSuchUserFoundException;
+import service.MoneyOperationService;
+import thread.AccountStatementJob;
 import util.AccountStatementPeriod;
 import util.CheckPrinter;
+import util.LatencyHistogram;
+import util.StatementRenderer;
+import util.Workers;
 
+import java.awt.Color;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 public class Main {
+    private static final String LEGACY_MONEY_STATEMENT = """
+                                        Money statement
+                                             Clever-Bank
+             Client                          %s
+             Account                      %d
+             Currency                    %s
+             Opening date             %s
+             Period                        %s
+             Current date              %s
+             Balance                     %.2f
+            -----------------------------------------------------------------------------
+             Income                       %.2f
+             Outgo                        %.2f
+            """;
 
     public static void main(String[] args) {
         //write method chosen from below  here
@@ -25,6 +70,8 @@ public class Main {
             System.out.println("Insufficient funds");
         } catch (NoSuchBankFoundException e) {
             System.out.println("No such bank found");
+        } catch (AccountBusyException e) {
+            System.out.println("Account is busy, try again later");
         }
     }
 
@@ -37,6 +84,8 @@ public class Main {
             System.out.println("No such account found");
         } catch (NoSuchBankFoundException e) {
             System.out.println("No such bank found");
+        } catch (AccountBusyException e) {
+            System.out.println("Account is busy, try again later");
         }
 
     }
@@ -53,6 +102,8 @@ public class Main {
             System.out.println("No such account found");
         } catch (NoSuchBankFoundException e) {
             System.out.println("No such bank found");
+        } catch (AccountBusyException e) {
+            System.out.println("Account is busy, try again later");
         }
     }
 
@@ -65,4 +116,233 @@ public class Main {
             System.out.println("No such user found");
         }
     }
+
+    private static void printMonthEndStatements() {
+        new AccountStatementJob().run(null);
+    }
+
+    /**
+     * Measures money statements per second prepared and rendered by the code path before StatementRenderer,
+     * with StatementRenderer one document per statement, and with StatementRenderer batch mode.
+     * Needs the database. Documents are written to a null stream, so only preparing and rendering is measured
+     */
+    private static void benchmarkMoneyStatements() {
+        int count = 2000;
+        Integer accId = 1;
+        LocalDateTime to = LocalDateTime.now();
+        LocalDateTime from = to.minusMonths(1);
+
+        try {
+            for (int i = 0; i < count / 10; i++) {
+                renderLegacyMoneyStatement(accId, from, to, OutputStream.nullOutputStream());
+                CheckPrinter.writeMoneyStatement(accId, from, to, OutputStream.nullOutputStream());
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                renderLegacyMoneyStatement(accId, from, to, OutputStream.nullOutputStream());
+            }
+            printThroughput("before: new font and formatters per statement", count, start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                CheckPrinter.writeMoneyStatement(accId, from, to, OutputStream.nullOutputStream());
+            }
+            printThroughput("after: shared font and formatters", count, start);
+
+            start = System.nanoTime();
+            CheckPrinter.writeMoneyStatements(Collections.nCopies(count, accId), from, to, OutputStream.nullOutputStream());
+            printThroughput("after: batch, one document", count, start);
+        } catch (NoSuchAccountFoundException e) {
+            System.out.println("No such account found");
+        } catch (NoSuchUserFoundException e) {
+            System.out.println("No such user found");
+        }
+    }
+
+    /**
+     * Measures rendering alone, without database: the same MONEY_STATEMENT text with sample values
+     * is formatted and rendered the old way (new formatters, font, document and writer per statement),
+     * with StatementRenderer one document per statement, and with StatementRenderer batch mode
+     */
+    private static void benchmarkStatementRendering() {
+        int count = 3000;
+        LocalDateTime to = LocalDateTime.now();
+        LocalDateTime from = to.minusMonths(1);
+        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd.MM.yyy");
+        DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd.MM.yyy HH:mm:ss");
+
+        for (int round = 1; round <= 2; round++) {
+            System.out.println("round " + round);
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                DateTimeFormatter formatter = new DateTimeFormatterBuilder().appendPattern("dd.MM.yyy").toFormatter();
+                renderLegacyDocument(sampleStatement(i, from, to, formatter,
+                        new DateTimeFormatterBuilder().appendPattern("dd.MM.yyy HH:mm:ss").toFormatter()),
+                        OutputStream.nullOutputStream());
+            }
+            printThroughput("before: new font and formatters per statement", count, start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                StatementRenderer.render(sampleStatement(i, from, to, dateFormatter, dateTimeFormatter),
+                        OutputStream.nullOutputStream());
+            }
+            printThroughput("after: shared font and formatters", count, start);
+
+            start = System.nanoTime();
+            StatementRenderer.renderAll(IntStream.range(0, count)
+                    .mapToObj(i -> sampleStatement(i, from, to, dateFormatter, dateTimeFormatter))
+                    .iterator(), OutputStream.nullOutputStream());
+            printThroughput("after: batch, one document", count, start);
+        }
+    }
+
+    private static String sampleStatement(int accId, LocalDateTime from, LocalDateTime to,
+                                          DateTimeFormatter dateFormatter, DateTimeFormatter dateTimeFormatter) {
+        return LEGACY_MONEY_STATEMENT.formatted(
+                "Ivanov Ivan Ivanovich",
+                accId,
+                "BYN",
+                from.minusYears(1).format(dateFormatter),
+                from.format(dateFormatter) + " - " + to.format(dateFormatter),
+                LocalDateTime.now().format(dateTimeFormatter),
+                1234.56,
+                500.0,
+                250.0);
+    }
+
+    /**
+     * Load test of execution models through the real /operations path: every request is a batch of a refill
+     * and a withdraw of 0.01 executed by MoneyOperationService, so it takes account locks, BankDao statements
+     * and connections of ConnectionPool exactly as MoneyOperationServlet does, only without HTTP.
+     * Needs the database and writes to it: run it against a scratch database, 100 accounts are created
+     * in bank and for user of account 1 and every request leaves two transactions.
+     * <p>Requests are handled on a fixed pool of 200 platform threads, like container threads, and on virtual
+     * threads, like AsyncDispatcher does for /operations with execution.mode=virtual; the latter are skipped on JDK
+     * without them. Operations of a batch run on Workers executors, which follow execution.mode. /statement is
+     * not covered: its documents are rendered on the platform pool of StatementService in any mode</p>
+     */
+    private static void loadTestExecutionModels() {
+        int requests = 5000;
+        AccountDao accountDao = AccountDao.getInstance();
+        Account template = accountDao.findById(1).orElseThrow();
+        List<Integer> accounts = IntStream.rangeClosed(1, 100)
+                .mapToObj(i -> {
+                    Account account = new Account();
+                    account.setCurrency(template.getCurrency());
+                    account.setOpeningDate(LocalDateTime.now());
+                    account.setBalance(1000d);
+                    account.setBankId(template.getBankId());
+                    account.setAppUserId(template.getAppUserId());
+                    return accountDao.save(account).getId();
+                })
+                .toList();
+
+        for (int concurrency : new int[]{50, 200, 1000}) {
+            runLoad("platform pool of 200, concurrency " + concurrency,
+                    Executors.newFixedThreadPool(200), concurrency, requests, accounts);
+            ExecutorService virtual;
+            try {
+                virtual = Workers.createVirtual("load", concurrency);
+            } catch (UnsupportedOperationException e) {
+                System.out.println("virtual threads, concurrency " + concurrency + ": skipped, " + e.getMessage());
+                continue;
+            }
+            runLoad("virtual threads, concurrency " + concurrency, virtual, concurrency, requests, accounts);
+        }
+    }
+
+    private static void runLoad(String name, ExecutorService executor, int concurrency, int requests, List<Integer> accounts) {
+        MoneyOperationService moneyOperationService = MoneyOperationService.getInstance();
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicInteger failed = new AtomicInteger();
+        //at most 'concurrency' requests are in flight, like clients waiting for their responses
+        Semaphore clients = new Semaphore(concurrency);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            Integer accId = accounts.get(i % accounts.size());
+            clients.acquireUninterruptibly();
+            long sent = System.nanoTime();
+            executor.execute(() -> {
+                try {
+                    moneyOperationService.execute(List.of(
+                                    new MoneyOperation(1, TransactionType.REFILL, null, accId, 0.01),
+                                    new MoneyOperation(2, TransactionType.WITHDRAW, accId, null, 0.01)),
+                            result -> {
+                                if (!result.isSucceeded()) failed.incrementAndGet();
+                            });
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                } finally {
+                    latency.record(System.nanoTime() - sent);
+                    clients.release();
+                }
+            });
+        }
+        clients.acquireUninterruptibly(concurrency);
+        long millis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+        System.out.println(name + ": " + requests + " requests in " + millis + " ms, "
+                           + requests * 1000L / millis + " requests/s, failed operations " + failed.get());
+        System.out.println("latency: " + latency);
+        executor.shutdown();
+    }
+
+    private static void printThroughput(String name, int count, long start) {
+        long millis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+        System.out.println(name + ": " + count + " statements in " + millis + " ms, "
+                           + count * 1000L / millis + " statements/s");
+    }
+
+    /**
+     * Prepares and renders money statement exactly as CheckPrinter.printMoneyStatement did before StatementRenderer,
+     * only the document goes to given stream instead of a new file in statement-money folder
+     */
+    private static void renderLegacyMoneyStatement(Integer accId, LocalDateTime from, LocalDateTime to, OutputStream out) throws NoSuchAccountFoundException, NoSuchUserFoundException {
+        AccountDao accountDao = AccountDao.getInstance();
+        Account account = accountDao.getById(accId);
+        AppUser appUser = AppUserDao.getInstance().getById(account.getAppUserId());
+        DateTimeFormatter formatter = new DateTimeFormatterBuilder().appendPattern("dd.MM.yyy").toFormatter();
+
+        Double income = accountDao.getIncomeByIdAndPeriod(accId, from, to);
+        Double outgo = accountDao.getOutgoByIdAndPeriod(accId, from, to);
+
+        String statement =
+                LEGACY_MONEY_STATEMENT.formatted(
+                        appUser.getFullName(),
+                        accId,
+                        account.getCurrency().name(),
+                        account.getOpeningDate().format(formatter),
+                        from.format(formatter) + " - " + to.format(formatter),
+                        LocalDateTime.now().format(new DateTimeFormatterBuilder().appendPattern("dd.MM.yyy HH:mm:ss").toFormatter()),
+                        account.getBalance(),
+                        income,
+                        outgo);
+
+        synchronized (CheckPrinter.class) {
+            renderLegacyDocument(statement, out);
+        }
+    }
+
+    /**
+     * Renders text as CheckPrinter did before StatementRenderer: new font, document and writer per statement
+     */
+    private static void renderLegacyDocument(String statement, OutputStream out) {
+        try {
+            Document doc = new Document();
+            PdfWriter writer = PdfWriter.getInstance(doc, out);
+
+            Font font = new Font(Font.COURIER, 10, Font.getFontStyleFromName(BaseFont.CP1250), Color.BLACK);
+            Chunk chunk = new Chunk(statement, font);
+            doc.open();
+            Paragraph paragraph = new Paragraph("");
+            doc.add(paragraph);
+            doc.add(chunk);
+            doc.close();
+            writer.close();
+        } catch (DocumentException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
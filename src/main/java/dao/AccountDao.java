@@ -3,23 +3,39 @@ package dao;
 
 import entity.Account;
 import entity.Currency;
-import entity.Transaction;
+import exception.AccountBusyException;
 import exception.NoSuchAccountFoundException;
 import util.ConnectionManager;
 
 import java.sql.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class AccountDao implements Dao<Integer, Account> {
     private static final AccountDao INSTANCE = new AccountDao();
-    private final ConcurrentNavigableMap<Integer, Account> accountMap = new ConcurrentSkipListMap<>();
+    //accounts carry their locks, so they are never evicted: two copies of one account would have two locks
+    private final EntityCache<Integer, Account> accountCache = new ResidentEntityCache<>();
+    //guards save and delete; a lock rather than synchronized, so waiting virtual threads do not pin carriers
+    private final Lock writeLock = new ReentrantLock();
+    private final ConcurrentNavigableMap<Integer, NavigableSet<Integer>> bankIndex = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Integer, NavigableSet<Integer>> appUserIndex = new ConcurrentSkipListMap<>();
     private static final TransactionDao transactionDao = TransactionDao.getInstance();
+    private static final AccountLockManager lockManager = AccountLockManager.getInstance();
+    private static final IdAllocator idAllocator = IdAllocator.getInstance();
 
     private static final String FIND_ALL_SQL = """
             SELECT * FROM account;
@@ -37,13 +53,16 @@ public class AccountDao implements Dao<Integer, Account> {
             """;
 
     private static final String SAVE_SQL = """
-            INSERT INTO account(currency, openingdate, balance, bankid, appuserid)
-            VALUES(?,?,?,?,?)
-            RETURNING id;
+            INSERT INTO account(id, currency, openingdate, balance, bankid, appuserid)
+            VALUES(?,?,?,?,?,?);
             """;
+    private static final String ID_SEQUENCE = "account_id_seq";
 
     {
-        findAll().forEach(account -> accountMap.put(account.getId(), account));
+        findAll().forEach(account -> {
+            accountCache.put(account.getId(), account);
+            index(account);
+        });
     }
 
     private AccountDao() {
@@ -58,30 +77,57 @@ public class AccountDao implements Dao<Integer, Account> {
 
 
     /**
-     * Blocks locks of both accounts
+     * Blocks locks of both accounts in ascending id order
      *
      * @param acc1 first account to lock
      * @param acc2 second account to lock
+     * @throws AccountBusyException if one of accounts could not be locked within timeout
+     * @see AccountLockManager
      */
-    public void lockAccounts(Account acc1, Account acc2) {
-        while (true) {
-            boolean acc1LockResult = acc1.getLock().tryLock();
-            boolean acc2LockResult = acc2.getLock().tryLock();
-            if (acc1LockResult && acc2LockResult) break;
-            if (acc1LockResult) acc1.getLock().unlock();
-            if (acc2LockResult) acc2.getLock().unlock();
-        }
+    public void lockAccounts(Account acc1, Account acc2) throws AccountBusyException {
+        lockManager.lock(acc1, acc2);
     }
 
     /**
      * Blocks lock of an account
      *
      * @param acc account to lock
+     * @throws AccountBusyException if account could not be locked within timeout
+     * @see AccountLockManager
      */
-    public void lockAccount(Account acc) {
-        while (true) {
-            if (acc.getLock().tryLock()) break;
-        }
+    public void lockAccount(Account acc) throws AccountBusyException {
+        lockManager.lock(acc);
+    }
+
+    /**
+     * Releases locks of both accounts
+     *
+     * @param acc1 first account to unlock
+     * @param acc2 second account to unlock
+     */
+    public void unlockAccounts(Account acc1, Account acc2) {
+        lockManager.unlock(acc1, acc2);
+    }
+
+    /**
+     * Releases lock of an account
+     *
+     * @param acc account to unlock
+     */
+    public void unlockAccount(Account acc) {
+        lockManager.unlock(acc);
+    }
+
+    /**
+     * Writes balance that is already stored in database into cached account and increments its version.
+     * Must be called while holding lock of the account, right after database update
+     *
+     * @param acc     cached account
+     * @param balance balance stored in database
+     */
+    public void refreshBalance(Account acc, Double balance) {
+        acc.setBalance(balance);
+        acc.setVersion(acc.getVersion() + 1);
     }
 
     /**
@@ -93,12 +139,7 @@ public class AccountDao implements Dao<Integer, Account> {
      * @return calculated income of particular account at chosen period (from, to)
      */
     public Double getIncomeByIdAndPeriod(Integer accId, LocalDateTime from, LocalDateTime to) {
-        List<Transaction> transactions = transactionDao.findAll();
-        return transactions.stream()
-                .filter(transaction -> Objects.equals(transaction.getReceiverAccId().orElse(0), accId))
-                .filter(transaction -> transaction.getDate().isBefore(to) && transaction.getDate().isAfter(from))
-                .map(Transaction::getTotal)
-                .reduce(Double::sum).orElse(0d);
+        return transactionDao.getIncomeByAccIdAndPeriod(accId, from, to);
     }
 
     /**
@@ -110,12 +151,33 @@ public class AccountDao implements Dao<Integer, Account> {
      * @return calculated outgo of particular account at chosen period (from, to)
      */
     public Double getOutgoByIdAndPeriod(Integer accId, LocalDateTime from, LocalDateTime to) {
-        List<Transaction> transactions = transactionDao.findAll();
-        return -transactions.stream()
-                .filter(transaction -> Objects.equals(transaction.getSenderAccId().orElse(0), accId))
-                .filter(transaction -> transaction.getDate().isBefore(to) && transaction.getDate().isAfter(from))
-                .map(Transaction::getTotal)
-                .reduce(Double::sum).orElse(0d);
+        return -transactionDao.getOutgoByAccIdAndPeriod(accId, from, to);
+    }
+
+    /**
+     * Finds income and outgo of Account per day
+     *
+     * @param accId id of Account
+     * @param from  first day, included
+     * @param to    last day, included
+     * @return turnover per day, days without transactions are absent
+     * @see Turnover
+     */
+    public NavigableMap<LocalDate, Turnover> getDailyTurnoverByIdAndPeriod(Integer accId, LocalDate from, LocalDate to) {
+        return transactionDao.findDailyTurnover(accId, from, to);
+    }
+
+    /**
+     * Finds income and outgo of Account per month
+     *
+     * @param accId id of Account
+     * @param from  first month, included
+     * @param to    last month, included
+     * @return turnover per month, months without transactions are absent
+     * @see Turnover
+     */
+    public NavigableMap<YearMonth, Turnover> getMonthlyTurnoverByIdAndPeriod(Integer accId, YearMonth from, YearMonth to) {
+        return transactionDao.findMonthlyTurnover(accId, from, to);
     }
 
     /**
@@ -123,7 +185,7 @@ public class AccountDao implements Dao<Integer, Account> {
      */
     @Override
     public List<Account> findAll() {
-        if (!accountMap.isEmpty()) return accountMap.values().stream().toList();
+        if (!accountCache.isEmpty()) return accountCache.values().stream().toList();
 
         try (Connection connection = ConnectionManager.get();
              PreparedStatement statement = connection.prepareStatement(FIND_ALL_SQL)) {
@@ -138,6 +200,55 @@ public class AccountDao implements Dao<Integer, Account> {
         }
     }
 
+    /**
+     * Passes every account to consumer, from cache or row by row from database
+     *
+     * @param consumer receives each account
+     */
+    @Override
+    public void forEach(Consumer<Account> consumer) {
+        if (!accountCache.isEmpty()) {
+            accountCache.values().forEach(consumer);
+            return;
+        }
+
+        try (Connection connection = ConnectionManager.get();
+             PreparedStatement statement = connection.prepareStatement(FIND_ALL_SQL)) {
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                consumer.accept(buildAccount(resultSet));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Finds page of accounts ordered by id, starting after the last account of previous page.
+     * Bank and owner conditions are answered by bank and appUser indexes, otherwise cache is walked from afterId.
+     * Walking stops as soon as the page is full
+     *
+     * @param filter  conditions of query
+     * @param afterId id of the last account of previous page, 0 for the first page
+     * @param limit   maximal page size
+     * @return accounts ordered by id
+     */
+    public List<Account> findPage(AccountFilter filter, Integer afterId, int limit) {
+        NavigableSet<Integer> ids = null;
+        if (filter.bankId() != null) ids = bankIndex.getOrDefault(filter.bankId(), Collections.emptyNavigableSet());
+        if (filter.appUserId() != null) {
+            NavigableSet<Integer> owned = appUserIndex.getOrDefault(filter.appUserId(), Collections.emptyNavigableSet());
+            if (ids == null || owned.size() < ids.size()) ids = owned;
+        }
+
+        Stream<Account> accounts = ids == null
+                ? accountCache.valuesAfter(afterId).stream()
+                : ids.tailSet(afterId, false).stream().map(accountCache::get).flatMap(Optional::stream);
+        return accounts.filter(filter::matches)
+                .limit(limit)
+                .toList();
+    }
+
     /**
      * finds account by id without throwing NoSuchAccountFoundException if not found
      *
@@ -146,7 +257,7 @@ public class AccountDao implements Dao<Integer, Account> {
      */
     @Override
     public Optional<Account> findById(Integer id) {
-        return Optional.ofNullable(accountMap.get(id));
+        return accountCache.get(id);
     }
 
     /**
@@ -172,8 +283,10 @@ public class AccountDao implements Dao<Integer, Account> {
     public boolean delete(Integer id) {
         if (findById(id).isEmpty()) return false;
 
-        synchronized (this) {
-            accountMap.remove(id);
+        writeLock.lock();
+        try {
+            findById(id).ifPresent(this::unindex);
+            accountCache.remove(id);
 
             try (Connection connection = ConnectionManager.get();
                  PreparedStatement statement = connection.prepareStatement(DELETE_SQL)) {
@@ -185,6 +298,8 @@ public class AccountDao implements Dao<Integer, Account> {
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -196,15 +311,15 @@ public class AccountDao implements Dao<Integer, Account> {
      */
     @Override
     public boolean update(Account entity) {
-        if (findById(entity.getId()).isEmpty()) return false;
-        Account account = accountMap.get(entity.getId());
-
-        lockAccount(account);
+        Optional<Account> found = findById(entity.getId());
+        if (found.isEmpty()) return false;
+        Account account = found.get();
 
-        account.setCurrency(entity.getCurrency());
-        account.setBalance(entity.getBalance());
-        account.setBankId(entity.getBankId());
-        account.setAppUserId(entity.getAppUserId());
+        try {
+            lockAccount(account);
+        } catch (AccountBusyException e) {
+            throw new RuntimeException(e);
+        }
 
         try (Connection connection = ConnectionManager.get();
              PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
@@ -214,44 +329,77 @@ public class AccountDao implements Dao<Integer, Account> {
             statement.setObject(4, entity.getAppUserId());
             statement.setObject(5, entity.getId());
             statement.executeUpdate();
+
+            unindex(account);
+            account.setCurrency(entity.getCurrency());
+            account.setBankId(entity.getBankId());
+            account.setAppUserId(entity.getAppUserId());
+            index(account);
+            refreshBalance(account, entity.getBalance());
             return true;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         } finally {
-            account.getLock().unlock();
+            unlockAccount(account);
         }
     }
 
     /**
-     * saves account using Account entity
+     * saves account using Account entity. Id is taken from preallocated block of account_id_seq
      *
      * @param entity account to save;
      * @return account with assigned id
+     * @see IdAllocator
      */
     @Override
-    public synchronized Account save(Account entity) {
-        try (Connection connection = ConnectionManager.get();
-             PreparedStatement statement = connection.prepareStatement(SAVE_SQL, Statement.RETURN_GENERATED_KEYS)) {
+    public Account save(Account entity) {
+        writeLock.lock();
+        try {
+            entity.setId(idAllocator.next(ID_SEQUENCE));
 
-            statement.setObject(1, entity.getCurrency().name());
-            statement.setObject(2, Timestamp.valueOf(entity.getOpeningDate()));
-            statement.setObject(3, entity.getBalance());
-            statement.setObject(4, entity.getBankId());
-            statement.setObject(5, entity.getAppUserId());
-            statement.executeUpdate();
-
-            ResultSet generatedKeys = statement.getGeneratedKeys();
-            generatedKeys.next();
-            entity.setId(generatedKeys.getObject("id", Integer.class));
+            try (Connection connection = ConnectionManager.get();
+                 PreparedStatement statement = connection.prepareStatement(SAVE_SQL)) {
+
+                statement.setObject(1, entity.getId());
+                statement.setObject(2, entity.getCurrency().name());
+                statement.setObject(3, Timestamp.valueOf(entity.getOpeningDate()));
+                statement.setObject(4, entity.getBalance());
+                statement.setObject(5, entity.getBankId());
+                statement.setObject(6, entity.getAppUserId());
+                statement.executeUpdate();
 
-            accountMap.put(entity.getId(), entity);
+                accountCache.put(entity.getId(), entity);
+                index(entity);
 
-            return entity;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+                return entity;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        } finally {
+            writeLock.unlock();
         }
     }
 
+    /**
+     * Adds account to bank and appUser indexes
+     */
+    private void index(Account account) {
+        if (account.getBankId() != null)
+            bankIndex.computeIfAbsent(account.getBankId(), id -> new ConcurrentSkipListSet<>()).add(account.getId());
+        if (account.getAppUserId() != null)
+            appUserIndex.computeIfAbsent(account.getAppUserId(), id -> new ConcurrentSkipListSet<>()).add(account.getId());
+    }
+
+    /**
+     * Removes account from bank and appUser indexes. Must be called before bank or owner of account changes
+     */
+    private void unindex(Account account) {
+        if (account.getBankId() != null)
+            Optional.ofNullable(bankIndex.get(account.getBankId())).ifPresent(ids -> ids.remove(account.getId()));
+        if (account.getAppUserId() != null)
+            Optional.ofNullable(appUserIndex.get(account.getAppUserId())).ifPresent(ids -> ids.remove(account.getId()));
+    }
+
     /**
      * Builds Account from resultSet
      *
@@ -265,7 +413,8 @@ public class AccountDao implements Dao<Integer, Account> {
                 resultSet.getObject("openingdate", Timestamp.class).toLocalDateTime(),
                 resultSet.getObject("balance", Double.class),
                 resultSet.getObject("bankid", Integer.class),
-                resultSet.getObject("appuserid", Integer.class)
+                resultSet.getObject("appuserid", Integer.class),
+                0L
         );
     }
 }
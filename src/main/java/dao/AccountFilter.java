@@ -0,0 +1,25 @@
+package dao;
+
+import entity.Account;
+import entity.Currency;
+
+/**
+ * Conditions of account page query, null means no condition
+ *
+ * @param bankId     bank of account
+ * @param appUserId  owner of account
+ * @param currency   currency of account
+ * @param minBalance least balance, included
+ * @param maxBalance greatest balance, included
+ */
+public record AccountFilter(Integer bankId, Integer appUserId, Currency currency,
+                            Double minBalance, Double maxBalance) {
+
+    public boolean matches(Account account) {
+        return (bankId == null || bankId.equals(account.getBankId()))
+               && (appUserId == null || appUserId.equals(account.getAppUserId()))
+               && (currency == null || currency == account.getCurrency())
+               && (minBalance == null || account.getBalance() >= minBalance)
+               && (maxBalance == null || account.getBalance() <= maxBalance);
+    }
+}
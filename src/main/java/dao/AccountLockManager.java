@@ -0,0 +1,163 @@
+package dao;
+
+import entity.Account;
+import exception.AccountBusyException;
+import util.PropertiesUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+public class AccountLockManager {
+    private static final String LOCK_TIMEOUT_KEY = "account.lock.timeout.ms";
+    private static final Long DEFAULT_LOCK_TIMEOUT = 5000L;
+    private static final AccountLockManager INSTANCE = new AccountLockManager();
+    private final ConcurrentNavigableMap<Integer, LockStats> statsMap = new ConcurrentSkipListMap<>();
+    private final long timeoutMillis;
+
+    private AccountLockManager() {
+        String timeout = PropertiesUtil.get(LOCK_TIMEOUT_KEY);
+        timeoutMillis = timeout == null ? DEFAULT_LOCK_TIMEOUT : Long.parseLong(timeout);
+    }
+
+    /**
+     * @return Instance of class
+     */
+    public static AccountLockManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Blocks locks of both accounts. Locks are always taken in ascending id order,
+     * so two threads locking the same pair can never wait for each other
+     *
+     * @param acc1 first account to lock
+     * @param acc2 second account to lock
+     * @throws AccountBusyException if one of accounts could not be locked within timeout
+     */
+    public void lock(Account acc1, Account acc2) throws AccountBusyException {
+        if (acc1.getId().equals(acc2.getId())) {
+            lock(acc1);
+            return;
+        }
+
+        Account first = acc1.getId() < acc2.getId() ? acc1 : acc2;
+        Account second = first == acc1 ? acc2 : acc1;
+
+        lock(first);
+        try {
+            lock(second);
+        } catch (AccountBusyException e) {
+            first.getLock().unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Blocks lock of an account. Waiting thread is parked until lock is released or timeout expires
+     *
+     * @param acc account to lock
+     * @throws AccountBusyException if account could not be locked within timeout
+     */
+    public void lock(Account acc) throws AccountBusyException {
+        Lock lock = acc.getLock();
+        LockStats stats = statsMap.computeIfAbsent(acc.getId(), id -> new LockStats());
+        stats.acquisitions.increment();
+
+        if (lock.tryLock()) return;
+
+        stats.contentions.increment();
+        long start = System.nanoTime();
+        try {
+            boolean locked = lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+            stats.waitNanos.add(System.nanoTime() - start);
+            if (!locked) {
+                stats.timeouts.increment();
+                throw new AccountBusyException();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stats.timeouts.increment();
+            throw new AccountBusyException();
+        }
+    }
+
+    /**
+     * Releases locks of both accounts
+     *
+     * @param acc1 first account to unlock
+     * @param acc2 second account to unlock
+     */
+    public void unlock(Account acc1, Account acc2) {
+        acc1.getLock().unlock();
+        if (!acc1.getId().equals(acc2.getId())) acc2.getLock().unlock();
+    }
+
+    /**
+     * Releases lock of an account
+     *
+     * @param acc account to unlock
+     */
+    public void unlock(Account acc) {
+        acc.getLock().unlock();
+    }
+
+    /**
+     * @param accId id of Account
+     * @return lock statistics of particular account, empty statistics if account was never locked
+     */
+    public LockStats getStats(Integer accId) {
+        return statsMap.getOrDefault(accId, new LockStats());
+    }
+
+    /**
+     * @return lock statistics of all accounts that were ever locked, ordered by account id
+     */
+    public Map<Integer, LockStats> getStats() {
+        return statsMap;
+    }
+
+    public static class LockStats {
+        private final LongAdder acquisitions = new LongAdder();
+        private final LongAdder contentions = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+
+        /**
+         * @return number of lock attempts
+         */
+        public long getAcquisitions() {
+            return acquisitions.sum();
+        }
+
+        /**
+         * @return number of lock attempts that found account already locked
+         */
+        public long getContentions() {
+            return contentions.sum();
+        }
+
+        /**
+         * @return number of lock attempts that ended with AccountBusyException
+         */
+        public long getTimeouts() {
+            return timeouts.sum();
+        }
+
+        /**
+         * @return total time in milliseconds spent waiting for the lock
+         */
+        public long getWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+        }
+
+        @Override
+        public String toString() {
+            return "LockStats(acquisitions=" + getAcquisitions() + ", contentions=" + getContentions()
+                   + ", timeouts=" + getTimeouts() + ", waitMillis=" + getWaitMillis() + ")";
+        }
+    }
+}
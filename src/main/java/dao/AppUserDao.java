@@ -8,16 +8,23 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public class AppUserDao implements Dao<Integer, AppUser> {
     private static final AppUserDao INSTANCE = new AppUserDao();
-    private final ConcurrentNavigableMap<Integer, AppUser> appUserMap = new ConcurrentSkipListMap<>();
+    private final EntityCache<Integer, AppUser> appUserCache = EntityCache.of("appuser");
+    private final Lock writeLock = new ReentrantLock();
     private static final String FIND_ALL_SQL = """
             SELECT *
             FROM appuser;
             """;
+    private static final String FIND_BY_ID_SQL = """
+            SELECT *
+            FROM appuser
+            WHERE id = ?;
+            """;
     private static final String DELETE_SQL = """
             DELETE
             FROM appuser
@@ -29,13 +36,14 @@ public class AppUserDao implements Dao<Integer, AppUser> {
             WHERE id = ?;
             """;
     private static final String SAVE_SQL = """
-            INSERT INTO appuser(fullname)
-            VALUES(?)
-            RETURNING id;
+            INSERT INTO appuser(id, fullname)
+            VALUES(?,?);
             """;
+    private static final String ID_SEQUENCE = "appuser_id_seq";
+    private static final IdAllocator idAllocator = IdAllocator.getInstance();
 
     {
-        findAll().forEach(appUser -> appUserMap.put(appUser.getId(), appUser));
+        if (appUserCache.isResident()) findAll().forEach(appUser -> appUserCache.put(appUser.getId(), appUser));
     }
 
     private AppUserDao() {
@@ -53,7 +61,7 @@ public class AppUserDao implements Dao<Integer, AppUser> {
      */
     @Override
     public List<AppUser> findAll() {
-        if (!appUserMap.isEmpty()) return appUserMap.values().stream().toList();
+        if (appUserCache.isResident() && !appUserCache.isEmpty()) return appUserCache.values().stream().toList();
 
         try (Connection connection = ConnectionManager.get();
              PreparedStatement statement = connection.prepareStatement(FIND_ALL_SQL)) {
@@ -68,6 +76,29 @@ public class AppUserDao implements Dao<Integer, AppUser> {
         }
     }
 
+    /**
+     * Passes every appUser to consumer, from cache if it is resident or row by row from database
+     *
+     * @param consumer receives each appUser
+     */
+    @Override
+    public void forEach(Consumer<AppUser> consumer) {
+        if (appUserCache.isResident() && !appUserCache.isEmpty()) {
+            appUserCache.values().forEach(consumer);
+            return;
+        }
+
+        try (Connection connection = ConnectionManager.get();
+             PreparedStatement statement = connection.prepareStatement(FIND_ALL_SQL)) {
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                consumer.accept(buildAppUser(resultSet));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * finds appUser by id without throwing NoSuchAppUserFoundException if not found
      *
@@ -76,7 +107,7 @@ public class AppUserDao implements Dao<Integer, AppUser> {
      */
     @Override
     public Optional<AppUser> findById(Integer id) {
-        return Optional.ofNullable(appUserMap.get(id));
+        return appUserCache.get(id, this::load);
     }
 
     /**
@@ -102,8 +133,9 @@ public class AppUserDao implements Dao<Integer, AppUser> {
     public boolean delete(Integer id) {
         if (findById(id).isEmpty()) return false;
 
-        synchronized (this) {
-            appUserMap.remove(id);
+        writeLock.lock();
+        try {
+            appUserCache.remove(id);
 
             try (Connection connection = ConnectionManager.get();
                  PreparedStatement statement = connection.prepareStatement(DELETE_SQL)) {
@@ -115,6 +147,8 @@ public class AppUserDao implements Dao<Integer, AppUser> {
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -126,8 +160,9 @@ public class AppUserDao implements Dao<Integer, AppUser> {
      */
     @Override
     public boolean update(AppUser entity) {
-        if (findById(entity.getId()).isEmpty()) return false;
-        AppUser appUser = appUserMap.get(entity.getId());
+        Optional<AppUser> found = findById(entity.getId());
+        if (found.isEmpty()) return false;
+        AppUser appUser = found.get();
 
         while (true) {
             if (appUser.getLock().tryLock()) break;
@@ -151,25 +186,47 @@ public class AppUserDao implements Dao<Integer, AppUser> {
     }
 
     /**
-     * saves appUser using AppUser entity
+     * saves appUser using AppUser entity. Id is taken from preallocated block of appuser_id_seq
      *
      * @param entity appUser to save;
      * @return appUser with assigned id
+     * @see IdAllocator
      */
     @Override
-    public synchronized AppUser save(AppUser entity) {
-        try (Connection connection = ConnectionManager.get();
-             PreparedStatement statement = connection.prepareStatement(SAVE_SQL, Statement.RETURN_GENERATED_KEYS)) {
-            statement.setObject(1, entity.getFullName());
-            statement.executeUpdate();
-            ResultSet generatedKeys = statement.getGeneratedKeys();
-            generatedKeys.next();
+    public AppUser save(AppUser entity) {
+        writeLock.lock();
+        try {
+            entity.setId(idAllocator.next(ID_SEQUENCE));
 
-            entity.setId(generatedKeys.getObject("id", Integer.class));
+            try (Connection connection = ConnectionManager.get();
+                 PreparedStatement statement = connection.prepareStatement(SAVE_SQL)) {
+                statement.setObject(1, entity.getId());
+                statement.setObject(2, entity.getFullName());
+                statement.executeUpdate();
 
-            appUserMap.put(entity.getId(), entity);
+                appUserCache.put(entity.getId(), entity);
 
-            return entity;
+                return entity;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reads one appUser from database
+     *
+     * @param id appUser id
+     * @return appUser or null if not found
+     */
+    private AppUser load(Integer id) {
+        try (Connection connection = ConnectionManager.get();
+             PreparedStatement statement = connection.prepareStatement(FIND_BY_ID_SQL)) {
+            statement.setObject(1, id);
+            ResultSet resultSet = statement.executeQuery();
+            return resultSet.next() ? buildAppUser(resultSet) : null;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
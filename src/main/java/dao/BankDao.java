@@ -4,46 +4,123 @@ import entity.Account;
 import entity.Bank;
 import entity.Transaction;
 import entity.TransactionType;
+import exception.AccountBusyException;
 import exception.InsufficientFundsException;
 import exception.NoSuchAccountFoundException;
 import exception.NoSuchBankFoundException;
-import util.CheckPrinter;
+import thread.ReceiptWriterThread;
 import util.ConnectionManager;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentNavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public class BankDao implements Dao<Integer, Bank> {
     private static final BankDao INSTANCE = new BankDao();
-    private final ConcurrentNavigableMap<Integer, Bank> bankMap = new ConcurrentSkipListMap<>();
+    private final EntityCache<Integer, Bank> bankCache = EntityCache.of("bank");
+    private final Lock writeLock = new ReentrantLock();
     private static final TransactionDao transactionDao = TransactionDao.getInstance();
     private static final AccountDao accountDao = AccountDao.getInstance();
+    private static final ReceiptWriterThread receiptWriter = ReceiptWriterThread.getInstance();
+    private static final IdAllocator idAllocator = IdAllocator.getInstance();
     private static final String WITHDRAW_SQL = """
             UPDATE account
             SET balance = balance - ?
-            WHERE id = ?;
+            WHERE id = ?
+            RETURNING balance;
             """;
 
     private static final String REFILL_SQL = """
             UPDATE account
             SET balance = balance + ?
-            WHERE id = ?;
+            WHERE id = ?
+            RETURNING balance;
             """;
 
     private static final String TRANSFER_SQL = """
-            BEGIN;
-            %s
-            %s
-            COMMIT;
-            """.formatted(WITHDRAW_SQL, REFILL_SQL);
+            WITH receiver_row AS (
+                SELECT id
+                FROM account
+                WHERE id = ?
+                FOR KEY SHARE
+            ), sender AS (
+                UPDATE account
+                SET balance = balance - ?
+                WHERE id = ? AND balance >= ? AND EXISTS (SELECT 1 FROM receiver_row)
+                RETURNING balance
+            ), receiver AS (
+                UPDATE account
+                SET balance = balance + ?
+                WHERE id = ? AND EXISTS (SELECT 1 FROM sender)
+                RETURNING balance
+            ), saved AS (
+                INSERT INTO transaction(id, date, type, receiveraccid, senderaccid, total)
+                SELECT ?, ?, ?, ?, ?, ? FROM receiver
+                RETURNING id
+            )
+            SELECT EXISTS (SELECT 1 FROM account WHERE id = ?) AS senderexists,
+                   EXISTS (SELECT 1 FROM receiver_row) AS receiverexists,
+                   sender.balance AS senderbalance, receiver.balance AS receiverbalance, saved.id
+            FROM (VALUES (1)) AS result
+                     LEFT JOIN sender ON TRUE
+                     LEFT JOIN receiver ON TRUE
+                     LEFT JOIN saved ON TRUE;
+            """;
+
+    private static final String ACCRUE_SQL = """
+            UPDATE account
+            SET balance = account.balance + accrual.amount
+            FROM unnest(?::integer[], ?::double precision[]) AS accrual(id, amount)
+            WHERE account.id = accrual.id
+              AND NOT EXISTS (SELECT 1
+                              FROM transaction
+                              WHERE transaction.receiveraccid = account.id
+                                AND transaction.senderaccid IS NULL
+                                AND transaction.type = 'REFILL'
+                                AND transaction.date = ?)
+            RETURNING account.id, account.balance, accrual.amount;
+            """;
+
+    private static final String ACCRUE_ALL_SQL = """
+            WITH accrual AS (
+                SELECT id, balance * ? / 100 AS amount, row_number() OVER (ORDER BY id) AS n
+                FROM account
+                WHERE balance > 0
+                  AND id = ANY(?::integer[])
+                  AND NOT EXISTS (SELECT 1
+                                  FROM transaction
+                                  WHERE transaction.receiveraccid = account.id
+                                    AND transaction.senderaccid IS NULL
+                                    AND transaction.type = 'REFILL'
+                                    AND transaction.date = ?)
+            ), accrued AS (
+                UPDATE account
+                SET balance = account.balance + accrual.amount
+                FROM accrual
+                WHERE account.id = accrual.id
+                RETURNING account.id, account.balance, accrual.amount, accrual.n
+            ), saved AS (
+                INSERT INTO transaction(id, date, type, receiveraccid, senderaccid, total)
+                SELECT (?::integer[])[n], ?, 'REFILL', id, NULL, amount FROM accrued
+                RETURNING id, receiveraccid
+            )
+            SELECT saved.id AS transactionid, accrued.id AS accountid, accrued.balance, accrued.amount
+            FROM accrued
+                     JOIN saved ON saved.receiveraccid = accrued.id;
+            """;
 
     private static final String FIND_ALL_SQL = """
             SELECT *
             FROM bank;
             """;
+    private static final String FIND_BY_ID_SQL = """
+            SELECT *
+            FROM bank
+            WHERE id = ?;
+            """;
 
     private static final String DELETE_SQL = """
             DELETE FROM bank
@@ -55,13 +132,13 @@ public class BankDao implements Dao<Integer, Bank> {
             WHERE id = ?;
             """;
     private static final String SAVE_SQL = """
-            INSERT INTO bank(name)
-            VALUES(?)
-            RETURNING id;
+            INSERT INTO bank(id, name)
+            VALUES(?,?);
             """;
+    private static final String ID_SEQUENCE = "bank_id_seq";
 
     {
-        findAll().forEach(bank -> bankMap.put(bank.getId(), bank));
+        if (bankCache.isResident()) findAll().forEach(bank -> bankCache.put(bank.getId(), bank));
     }
 
     private BankDao() {
@@ -81,48 +158,24 @@ public class BankDao implements Dao<Integer, Bank> {
      * @param receiverAccountId id of receivers account
      * @param amount            amount of money to be transferred
      * @return map with updated balances: senderBalance for sender and receiverBalance for receiver
+     * @throws IllegalArgumentException    if sender and receiver account is the same account
      * @throws InsufficientFundsException  if sender account have less money that is required for the transfer
      * @throws NoSuchAccountFoundException if one of 2 accounts does not exist
      * @throws NoSuchBankFoundException    if bank does not exist
+     * @throws AccountBusyException        if one of 2 accounts is locked by other operations longer than timeout
      */
-    public Map<String, Double> transfer(Integer senderAccountId, Integer receiverAccountId, Double amount) throws InsufficientFundsException, NoSuchAccountFoundException, NoSuchBankFoundException {
+    public Map<String, Double> transfer(Integer senderAccountId, Integer receiverAccountId, Double amount) throws InsufficientFundsException, NoSuchAccountFoundException, NoSuchBankFoundException, AccountBusyException {
+        if (senderAccountId.equals(receiverAccountId))
+            throw new IllegalArgumentException("Sender and receiver accounts must be different");
+
         Account sender = accountDao.getById(senderAccountId);
         Account receiver = accountDao.getById(receiverAccountId);
 
         accountDao.lockAccounts(sender, receiver);
-
-        try (Connection connection = ConnectionManager.get();
-             PreparedStatement statement = connection.prepareStatement(TRANSFER_SQL)) {
-            Double senderBalance = sender.getBalance();
-            Double receiverBalance = receiver.getBalance();
-
-            if (senderBalance.compareTo(amount) < 0) throw new InsufficientFundsException();
-
-
-            statement.setObject(1, amount);
-            statement.setObject(2, senderAccountId);
-            statement.setObject(3, amount);
-            statement.setObject(4, receiverAccountId);
-            statement.executeUpdate();
-
-            Transaction transaction = new Transaction();
-            transaction.setDate(LocalDateTime.now());
-            transaction.setType(TransactionType.TRANSFER);
-            transaction.setReceiverAccId(Optional.of(receiverAccountId));
-            transaction.setSenderAccId(Optional.of(senderAccountId));
-            transaction.setTotal(amount);
-
-            CheckPrinter.printReceipt(transactionDao.save(transaction));
-
-            Map<String, Double> balance = new HashMap<>();
-            balance.put("senderBalance", senderBalance - amount);
-            balance.put("receiverBalance", receiverBalance + amount);
-            return balance;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        try {
+            return transferLocked(sender, receiver, amount);
         } finally {
-            sender.getLock().unlock();
-            receiver.getLock().unlock();
+            accountDao.unlockAccounts(sender, receiver);
         }
     }
 
@@ -134,35 +187,16 @@ public class BankDao implements Dao<Integer, Bank> {
      * @return updated balance
      * @throws NoSuchAccountFoundException if one of 2 accounts does not exist
      * @throws NoSuchBankFoundException    if bank does not exist
+     * @throws AccountBusyException        if account is locked by other operations longer than timeout
      */
-    public Double refill(Double amount, Integer accountId) throws NoSuchAccountFoundException, NoSuchBankFoundException {
+    public Double refill(Double amount, Integer accountId) throws NoSuchAccountFoundException, NoSuchBankFoundException, AccountBusyException {
         Account account = accountDao.getById(accountId);
 
         accountDao.lockAccount(account);
-
-        Double balance = account.getBalance();
-
-        try (Connection connection = ConnectionManager.get();
-             PreparedStatement statement = connection.prepareStatement(REFILL_SQL)) {
-            statement.setObject(1, amount);
-            statement.setObject(2, accountId);
-            statement.executeUpdate();
-
-            Transaction transaction = new Transaction();
-            transaction.setDate(LocalDateTime.now());
-            transaction.setType(TransactionType.REFILL);
-            transaction.setReceiverAccId(Optional.of(accountId));
-            transaction.setSenderAccId(Optional.empty());
-            transaction.setTotal(amount);
-
-
-            CheckPrinter.printReceipt(transactionDao.save(transaction));
-
-            return balance + amount;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        try {
+            return refillLocked(amount, account);
         } finally {
-            account.getLock().unlock();
+            accountDao.unlockAccount(account);
         }
     }
 
@@ -175,38 +209,356 @@ public class BankDao implements Dao<Integer, Bank> {
      * @throws NoSuchAccountFoundException if one of 2 accounts does not exist
      * @throws NoSuchBankFoundException    if bank does not exist
      * @throws InsufficientFundsException  if sender account have less money that is required
+     * @throws AccountBusyException        if account is locked by other operations longer than timeout
      */
-    public Double withdraw(Double amount, Integer accountId) throws NoSuchAccountFoundException, InsufficientFundsException, NoSuchBankFoundException {
+    public Double withdraw(Double amount, Integer accountId) throws NoSuchAccountFoundException, InsufficientFundsException, NoSuchBankFoundException, AccountBusyException {
         Account account = accountDao.getById(accountId);
 
         accountDao.lockAccount(account);
+        try {
+            return withdrawLocked(amount, account);
+        } finally {
+            accountDao.unlockAccount(account);
+        }
+    }
+
+    /**
+     * Performs money operations in given order, taking lock of every involved account once for all of them.
+     * Locks are taken in ascending id order. A failed operation does not stop the following ones
+     *
+     * @param operations operations with existing accounts, e.g. all operations of a batch touching the same accounts
+     * @return results of operations in their order, available once locks are released
+     * @throws AccountBusyException if one of accounts is locked by other operations longer than timeout,
+     *                              then no operation is performed
+     */
+    public List<OperationResult> execute(List<MoneyOperation> operations) throws AccountBusyException {
+        TreeMap<Integer, Account> accounts = new TreeMap<>();
+        for (MoneyOperation operation : operations) {
+            operation.getSenderAccId().flatMap(accountDao::findById).ifPresent(acc -> accounts.put(acc.getId(), acc));
+            operation.getReceiverAccId().flatMap(accountDao::findById).ifPresent(acc -> accounts.put(acc.getId(), acc));
+        }
+
+        List<Account> locked = new ArrayList<>(accounts.size());
+        List<OperationResult> results = new ArrayList<>(operations.size());
+        try {
+            for (Account account : accounts.values()) {
+                accountDao.lockAccount(account);
+                locked.add(account);
+            }
+
+            for (MoneyOperation operation : operations) {
+                results.add(executeLocked(operation, accounts));
+            }
+            return results;
+        } finally {
+            locked.forEach(accountDao::unlockAccount);
+        }
+    }
 
+    private OperationResult executeLocked(MoneyOperation operation, Map<Integer, Account> accounts) {
+        Account sender = operation.getSenderAccId().map(accounts::get).orElse(null);
+        Account receiver = operation.getReceiverAccId().map(accounts::get).orElse(null);
+        if ((operation.getSenderAccId().isPresent() && sender == null)
+            || (operation.getReceiverAccId().isPresent() && receiver == null))
+            return OperationResult.failed(operation.item(), "No such account found");
+
+        try {
+            Map<Integer, Double> balances = new TreeMap<>();
+            switch (operation.type()) {
+                case TRANSFER -> {
+                    Map<String, Double> balance = transferLocked(sender, receiver, operation.amount());
+                    balances.put(sender.getId(), balance.get("senderBalance"));
+                    balances.put(receiver.getId(), balance.get("receiverBalance"));
+                }
+                case REFILL -> balances.put(receiver.getId(), refillLocked(operation.amount(), receiver));
+                case WITHDRAW -> balances.put(sender.getId(), withdrawLocked(operation.amount(), sender));
+            }
+            return OperationResult.succeeded(operation.item(), balances);
+        } catch (InsufficientFundsException e) {
+            return OperationResult.failed(operation.item(), "Insufficient funds");
+        } catch (NoSuchAccountFoundException e) {
+            return OperationResult.failed(operation.item(), "No such account found");
+        } catch (RuntimeException e) {
+            return OperationResult.failed(operation.item(), "Operation failed");
+        }
+    }
+
+    /**
+     * Transfer body, locks of both accounts must be held
+     *
+     * @throws NoSuchAccountFoundException if sender or receiver row was deleted after the accounts were found
+     */
+    private Map<String, Double> transferLocked(Account sender, Account receiver, Double amount) throws InsufficientFundsException, NoSuchAccountFoundException {
+        Transaction transaction = new Transaction();
+        transaction.setDate(LocalDateTime.now());
+        transaction.setType(TransactionType.TRANSFER);
+        transaction.setReceiverAccId(Optional.of(receiver.getId()));
+        transaction.setSenderAccId(Optional.of(sender.getId()));
+        transaction.setTotal(amount);
+        //id comes from the same reserved blocks as other transactions, so receipt writer knows it before commit.
+        //It is taken before the connection: reserving a block needs a connection of its own
+        transaction.setId(transactionDao.nextId());
 
         try (Connection connection = ConnectionManager.get();
-             PreparedStatement statement = connection.prepareStatement(WITHDRAW_SQL)) {
-            Double balance = account.getBalance();
+             PreparedStatement statement = connection.prepareStatement(TRANSFER_SQL)) {
+
+            //balance check, both balance updates and transaction insert are done by one atomic statement.
+            //Receiver row is share-locked first, so sender is debited only if receiver is there to be credited
+            statement.setObject(1, receiver.getId());
+            statement.setObject(2, amount);
+            statement.setObject(3, sender.getId());
+            statement.setObject(4, amount);
+            statement.setObject(5, amount);
+            statement.setObject(6, receiver.getId());
+            statement.setObject(7, transaction.getId());
+            statement.setObject(8, Timestamp.valueOf(transaction.getDate()));
+            statement.setObject(9, transaction.getType().name());
+            statement.setObject(10, receiver.getId());
+            statement.setObject(11, sender.getId());
+            statement.setObject(12, amount);
+            statement.setObject(13, sender.getId());
+            ResultSet resultSet;
+            try {
+                resultSet = statement.executeQuery();
+            } catch (SQLException e) {
+                receiptWriter.discard(transaction.getId());
+                throw e;
+            }
+
+            //statement always returns one row, saved id is null if nothing was changed
+            resultSet.next();
+            if (resultSet.getObject("id", Integer.class) == null) {
+                receiptWriter.discard(transaction.getId());
+                if (!resultSet.getBoolean("senderexists") || !resultSet.getBoolean("receiverexists"))
+                    throw new NoSuchAccountFoundException();
+                throw new InsufficientFundsException();
+            }
 
-            if (balance.compareTo(amount) < 0) throw new InsufficientFundsException();
+            Double senderBalance = resultSet.getObject("senderbalance", Double.class);
+            Double receiverBalance = resultSet.getObject("receiverbalance", Double.class);
+            accountDao.refreshBalance(sender, senderBalance);
+            accountDao.refreshBalance(receiver, receiverBalance);
 
+            transactionDao.cache(transaction);
+            receiptWriter.submit(transaction);
 
+            Map<String, Double> balance = new HashMap<>();
+            balance.put("senderBalance", senderBalance);
+            balance.put("receiverBalance", receiverBalance);
+            return balance;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Refill body, lock of account must be held
+     */
+    private Double refillLocked(Double amount, Account account) {
+        Double balance;
+        //connection is returned before the transaction is saved on a connection of its own,
+        //holding one while waiting for another deadlocks once all connections are held so
+        try (Connection connection = ConnectionManager.get();
+             PreparedStatement statement = connection.prepareStatement(REFILL_SQL)) {
             statement.setObject(1, amount);
-            statement.setObject(2, accountId);
-            statement.executeUpdate();
+            statement.setObject(2, account.getId());
+            ResultSet resultSet = statement.executeQuery();
+            resultSet.next();
+
+            balance = resultSet.getObject("balance", Double.class);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        accountDao.refreshBalance(account, balance);
+
+        Transaction transaction = new Transaction();
+        transaction.setDate(LocalDateTime.now());
+        transaction.setType(TransactionType.REFILL);
+        transaction.setReceiverAccId(Optional.of(account.getId()));
+        transaction.setSenderAccId(Optional.empty());
+        transaction.setTotal(amount);
+
+        receiptWriter.submit(transactionDao.save(transaction));
+
+        return balance;
+    }
 
-            Transaction transaction = new Transaction();
-            transaction.setDate(LocalDateTime.now());
-            transaction.setType(TransactionType.WITHDRAW);
-            transaction.setReceiverAccId(Optional.empty());
-            transaction.setSenderAccId(Optional.of(accountId));
-            transaction.setTotal(amount);
+    /**
+     * Withdraw body, lock of account must be held
+     */
+    private Double withdrawLocked(Double amount, Account account) throws InsufficientFundsException {
+        if (account.getBalance().compareTo(amount) < 0) throw new InsufficientFundsException();
 
-            CheckPrinter.printReceipt(transactionDao.save(transaction));
+        Double newBalance;
+        //connection is returned before the transaction is saved, as in refillLocked
+        try (Connection connection = ConnectionManager.get();
+             PreparedStatement statement = connection.prepareStatement(WITHDRAW_SQL)) {
+            statement.setObject(1, amount);
+            statement.setObject(2, account.getId());
+            ResultSet resultSet = statement.executeQuery();
+            resultSet.next();
 
-            return balance - amount;
+            newBalance = resultSet.getObject("balance", Double.class);
         } catch (SQLException e) {
             throw new RuntimeException(e);
+        }
+        accountDao.refreshBalance(account, newBalance);
+
+        Transaction transaction = new Transaction();
+        transaction.setDate(LocalDateTime.now());
+        transaction.setType(TransactionType.WITHDRAW);
+        transaction.setReceiverAccId(Optional.empty());
+        transaction.setSenderAccId(Optional.of(account.getId()));
+        transaction.setTotal(amount);
+
+        receiptWriter.submit(transactionDao.save(transaction));
+
+        return newBalance;
+    }
+
+
+    /**
+     * Accrues interest on positive balances of chunk of accounts with one UPDATE and one batch of REFILL
+     * transactions in one database transaction. Accounts which already got REFILL without sender
+     * at exactly the accrual date are skipped, so repeating a chunk after a crash does not accrue twice
+     *
+     * @param accounts   cached accounts ordered by id
+     * @param percentage interest in percents
+     * @param date       accrual date, the same for every chunk of one run
+     * @return saved REFILL transactions, one per account accrued
+     * @throws AccountBusyException if one of accounts is locked by other operations longer than timeout
+     */
+    public List<Transaction> accrueInterest(List<Account> accounts, double percentage, LocalDateTime date) throws AccountBusyException {
+        List<Account> locked = new ArrayList<>(accounts.size());
+        try {
+            for (Account account : accounts) {
+                accountDao.lockAccount(account);
+                locked.add(account);
+            }
+
+            List<Account> positive = accounts.stream().filter(account -> account.getBalance() > 0).toList();
+            if (positive.isEmpty()) return List.of();
+
+            //ids are taken before the connection, reserving a block needs a connection of its own;
+            //ids left over by accounts which are not accrued are discarded
+            List<Integer> ids = transactionDao.nextIds(positive.size());
+            try (Connection connection = ConnectionManager.get()) {
+                connection.setAutoCommit(false);
+                List<Transaction> transactions = new ArrayList<>();
+                try (PreparedStatement statement = connection.prepareStatement(ACCRUE_SQL)) {
+                    statement.setArray(1, connection.createArrayOf("integer",
+                            positive.stream().map(Account::getId).toArray(Integer[]::new)));
+                    statement.setArray(2, connection.createArrayOf("float8",
+                            positive.stream().map(account -> account.getBalance() * percentage / 100).toArray(Double[]::new)));
+                    statement.setObject(3, Timestamp.valueOf(date));
+                    ResultSet resultSet = statement.executeQuery();
+
+                    Map<Integer, Double> balances = new HashMap<>();
+                    while (resultSet.next()) {
+                        Integer accountId = resultSet.getObject("id", Integer.class);
+                        balances.put(accountId, resultSet.getObject("balance", Double.class));
+
+                        Transaction transaction = new Transaction();
+                        transaction.setId(ids.get(transactions.size()));
+                        transaction.setDate(date);
+                        transaction.setType(TransactionType.REFILL);
+                        transaction.setReceiverAccId(Optional.of(accountId));
+                        transaction.setSenderAccId(Optional.empty());
+                        transaction.setTotal(resultSet.getObject("amount", Double.class));
+                        transactions.add(transaction);
+                    }
+
+                    transactionDao.saveAll(connection, transactions);
+                    connection.commit();
+                    ids.subList(transactions.size(), ids.size()).forEach(receiptWriter::discard);
+
+                    for (Account account : positive) {
+                        Double balance = balances.get(account.getId());
+                        if (balance != null) accountDao.refreshBalance(account, balance);
+                    }
+                    for (Transaction transaction : transactions) {
+                        transactionDao.cache(transaction);
+                        receiptWriter.submit(transaction);
+                    }
+                    return transactions;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    ids.forEach(receiptWriter::discard);
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
         } finally {
-            account.getLock().unlock();
+            locked.forEach(accountDao::unlockAccount);
+        }
+    }
+
+    /**
+     * Accrues interest on positive balances of chunk of accounts with one statement: PostgreSQL calculates
+     * amounts, updates balances and inserts REFILL transactions. Only accounts of the chunk are locked,
+     * so money operations on other accounts go on while it runs.
+     * Cached accounts and transactions are refreshed from returned rows. Accounts which already got REFILL
+     * without sender at exactly the accrual date are skipped, so repeating it after a crash does not accrue twice
+     *
+     * @param accounts   cached accounts ordered by id
+     * @param percentage interest in percents
+     * @param date       accrual date, the same for every chunk of one run
+     * @return saved REFILL transactions, one per account accrued
+     * @throws AccountBusyException if one of accounts is locked by other operations longer than timeout
+     */
+    public List<Transaction> accrueInterestInDatabase(List<Account> accounts, double percentage, LocalDateTime date) throws AccountBusyException {
+        Map<Integer, Account> accountsById = new HashMap<>();
+        List<Account> locked = new ArrayList<>(accounts.size());
+        try {
+            for (Account account : accounts) {
+                accountDao.lockAccount(account);
+                locked.add(account);
+                accountsById.put(account.getId(), account);
+            }
+
+            if (accounts.isEmpty()) return List.of();
+            //one reserved id per locked account, ids of accounts which are not accrued are discarded
+            List<Integer> ids = transactionDao.nextIds(accounts.size());
+            Set<Integer> unused = new HashSet<>(ids);
+            try (Connection connection = ConnectionManager.get();
+                 PreparedStatement statement = connection.prepareStatement(ACCRUE_ALL_SQL)) {
+                statement.setObject(1, percentage);
+                statement.setArray(2, connection.createArrayOf("integer",
+                        accounts.stream().map(Account::getId).toArray(Integer[]::new)));
+                statement.setObject(3, Timestamp.valueOf(date));
+                statement.setArray(4, connection.createArrayOf("integer", ids.toArray()));
+                statement.setObject(5, Timestamp.valueOf(date));
+                ResultSet resultSet = statement.executeQuery();
+
+                List<Transaction> transactions = new ArrayList<>();
+                while (resultSet.next()) {
+                    Integer accountId = resultSet.getObject("accountid", Integer.class);
+                    Account account = accountsById.get(accountId);
+                    if (account != null) accountDao.refreshBalance(account, resultSet.getObject("balance", Double.class));
+
+                    Transaction transaction = new Transaction();
+                    transaction.setId(resultSet.getObject("transactionid", Integer.class));
+                    transaction.setDate(date);
+                    transaction.setType(TransactionType.REFILL);
+                    transaction.setReceiverAccId(Optional.of(accountId));
+                    transaction.setSenderAccId(Optional.empty());
+                    transaction.setTotal(resultSet.getObject("amount", Double.class));
+                    transactionDao.cache(transaction);
+                    receiptWriter.submit(transaction);
+                    transactions.add(transaction);
+                    unused.remove(transaction.getId());
+                }
+                return transactions;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            } finally {
+                unused.forEach(receiptWriter::discard);
+            }
+        } finally {
+            locked.forEach(accountDao::unlockAccount);
         }
     }
 
@@ -215,7 +567,7 @@ public class BankDao implements Dao<Integer, Bank> {
      */
     @Override
     public List<Bank> findAll() {
-        if (!bankMap.isEmpty()) return bankMap.values().stream().toList();
+        if (bankCache.isResident() && !bankCache.isEmpty()) return bankCache.values().stream().toList();
 
         try (Connection connection = ConnectionManager.get();
              PreparedStatement statement = connection.prepareStatement(FIND_ALL_SQL)) {
@@ -230,6 +582,29 @@ public class BankDao implements Dao<Integer, Bank> {
         }
     }
 
+    /**
+     * Passes every bank to consumer, from cache if it is resident or row by row from database
+     *
+     * @param consumer receives each bank
+     */
+    @Override
+    public void forEach(Consumer<Bank> consumer) {
+        if (bankCache.isResident() && !bankCache.isEmpty()) {
+            bankCache.values().forEach(consumer);
+            return;
+        }
+
+        try (Connection connection = ConnectionManager.get();
+             PreparedStatement statement = connection.prepareStatement(FIND_ALL_SQL)) {
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                consumer.accept(buildBank(resultSet));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * finds bank by id without throwing NoSuchBankFoundException if not found
      *
@@ -238,7 +613,7 @@ public class BankDao implements Dao<Integer, Bank> {
      */
     @Override
     public Optional<Bank> findById(Integer id) {
-        return Optional.ofNullable(bankMap.get(id));
+        return bankCache.get(id, this::load);
     }
 
     /**
@@ -264,8 +639,9 @@ public class BankDao implements Dao<Integer, Bank> {
     public boolean delete(Integer id) {
         if (findById(id).isEmpty()) return false;
 
-        synchronized (this) {
-            bankMap.remove(id);
+        writeLock.lock();
+        try {
+            bankCache.remove(id);
 
             try (Connection connection = ConnectionManager.get();
                  PreparedStatement statement = connection.prepareStatement(DELETE_SQL)) {
@@ -277,6 +653,8 @@ public class BankDao implements Dao<Integer, Bank> {
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -288,14 +666,15 @@ public class BankDao implements Dao<Integer, Bank> {
      */
     @Override
     public boolean update(Bank entity) {
-        if (findById(entity.getId()).isEmpty()) return false;
-        Bank bank = bankMap.get(entity.getId());
+        Optional<Bank> found = findById(entity.getId());
+        if (found.isEmpty()) return false;
+        Bank bank = found.get();
 
         while (true) {
             if (bank.getLock().tryLock()) break;
         }
 
-        bankMap.get(entity.getId()).setName(entity.getName());
+        bank.setName(entity.getName());
 
         try (Connection connection = ConnectionManager.get();
              PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
@@ -312,25 +691,47 @@ public class BankDao implements Dao<Integer, Bank> {
     }
 
     /**
-     * saves bank using Bank entity
+     * saves bank using Bank entity. Id is taken from preallocated block of bank_id_seq
      *
      * @param entity bank to save;
      * @return bank with assigned id
+     * @see IdAllocator
      */
     @Override
-    public synchronized Bank save(Bank entity) {
-        try (Connection connection = ConnectionManager.get();
-             PreparedStatement statement = connection.prepareStatement(SAVE_SQL, Statement.RETURN_GENERATED_KEYS)) {
-            statement.setObject(1, entity.getName());
-            statement.executeUpdate();
-            ResultSet generatedKeys = statement.getGeneratedKeys();
-            generatedKeys.next();
+    public Bank save(Bank entity) {
+        writeLock.lock();
+        try {
+            entity.setId(idAllocator.next(ID_SEQUENCE));
 
-            entity.setId(generatedKeys.getObject("id", Integer.class));
+            try (Connection connection = ConnectionManager.get();
+                 PreparedStatement statement = connection.prepareStatement(SAVE_SQL)) {
+                statement.setObject(1, entity.getId());
+                statement.setObject(2, entity.getName());
+                statement.executeUpdate();
 
-            bankMap.put(entity.getId(), entity);
+                bankCache.put(entity.getId(), entity);
 
-            return entity;
+                return entity;
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reads one bank from database
+     *
+     * @param id bank id
+     * @return bank or null if not found
+     */
+    private Bank load(Integer id) {
+        try (Connection connection = ConnectionManager.get();
+             PreparedStatement statement = connection.prepareStatement(FIND_BY_ID_SQL)) {
+            statement.setObject(1, id);
+            ResultSet resultSet = statement.executeQuery();
+            return resultSet.next() ? buildBank(resultSet) : null;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,50 @@
+package dao;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit, miss and eviction counters of an entity cache
+ */
+public class CacheStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @return number of lookups served from cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups that did not find entity in cache
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of entities removed from cache to respect its size bound
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats(hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + ")";
+    }
+}
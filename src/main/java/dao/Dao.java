@@ -2,10 +2,20 @@ package dao;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface Dao<K, T> {
     List<T> findAll();
 
+    /**
+     * Passes every entity to consumer without collecting them into a list
+     *
+     * @param consumer receives each entity
+     */
+    default void forEach(Consumer<T> consumer) {
+        findAll().forEach(consumer);
+    }
+
     Optional<T> findById(K id);
 
     T getById(Integer id) throws Exception;
@@ -0,0 +1,70 @@
+package dao;
+
+import util.PropertiesUtil;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Cache of entities used by DAO in place of a plain map.
+ * Resident cache keeps the whole table and never goes to database on miss,
+ * bounded cache keeps only recently used entities and loads missing ones on demand
+ *
+ * @param <K> type of entity id
+ * @param <V> type of entity
+ */
+public interface EntityCache<K extends Comparable<K>, V> {
+    String SIZE_KEY = "cache.%s.size";
+
+    /**
+     * Creates cache configured by property cache.{name}.size: positive value gives bounded LRU cache of that size,
+     * missing or zero value gives resident cache
+     *
+     * @param name name of cache in application.properties, e.g. transaction
+     * @return new cache
+     */
+    static <K extends Comparable<K>, V> EntityCache<K, V> of(String name) {
+        String size = PropertiesUtil.get(SIZE_KEY.formatted(name));
+        return size == null || Integer.parseInt(size) <= 0
+                ? new ResidentEntityCache<>()
+                : new LruEntityCache<>(Integer.parseInt(size));
+    }
+
+    /**
+     * @param key entity id
+     * @return Optional of cached entity, Optional.empty on miss
+     */
+    Optional<V> get(K key);
+
+    /**
+     * @param key    entity id
+     * @param loader loads entity from database on miss, returns null if entity does not exist
+     * @return Optional of cached or loaded entity
+     */
+    Optional<V> get(K key, Function<K, V> loader);
+
+    void put(K key, V value);
+
+    void remove(K key);
+
+    boolean isEmpty();
+
+    /**
+     * @return cached entities ordered by id
+     */
+    Collection<V> values();
+
+    /**
+     * @param key entity id
+     * @return cached entities with id greater than key, ordered by id
+     */
+    Collection<V> valuesAfter(K key);
+
+    /**
+     * @return true if cache keeps every entity of the table, so a miss means entity does not exist
+     */
+    boolean isResident();
+
+    CacheStats getStats();
+}
@@ -0,0 +1,143 @@
+package dao;
+
+import util.ConnectionManager;
+import util.PropertiesUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+public class IdAllocator {
+    private static final String BLOCK_SIZE_KEY = "id.block.size";
+    private static final Integer DEFAULT_BLOCK_SIZE = 50;
+    private static final IdAllocator INSTANCE = new IdAllocator();
+    private final Map<String, IdBlock> blocks = new ConcurrentHashMap<>();
+    private final Map<String, Consumer<List<Integer>>> reserveListeners = new ConcurrentHashMap<>();
+    private final int blockSize;
+
+    private static final String RESERVE_SQL = """
+            SELECT nextval(?::regclass) AS id
+            FROM generate_series(1, ?);
+            """;
+
+    private IdAllocator() {
+        String size = PropertiesUtil.get(BLOCK_SIZE_KEY);
+        blockSize = size == null ? DEFAULT_BLOCK_SIZE : Integer.parseInt(size);
+    }
+
+    /**
+     * @return Instance of class
+     */
+    public static IdAllocator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gives next id of sequence. Ids are reserved from database in blocks,
+     * so only one of blockSize calls makes a round trip
+     *
+     * @param sequence name of PostgreSQL sequence, e.g. transaction_id_seq
+     * @return id which no other caller will get
+     */
+    public Integer next(String sequence) {
+        return blocks.computeIfAbsent(sequence, IdBlock::new).next();
+    }
+
+    /**
+     * Reserves ids for one statement inserting many rows, with one query and past the block
+     *
+     * @param sequence name of PostgreSQL sequence
+     * @param count    number of ids
+     * @return ids which no other caller will get, ascending
+     */
+    public List<Integer> next(String sequence, int count) {
+        List<Integer> ids = reserve(sequence, count);
+        Consumer<List<Integer>> listener = reserveListeners.get(sequence);
+        if (listener != null && !ids.isEmpty()) listener.accept(ids);
+        return ids;
+    }
+
+    /**
+     * Sets listener told about ids of sequence before any of them is given out, so it can record them
+     * before rows with these ids are committed. Ids already reserved and not yet given out are passed right away
+     *
+     * @param sequence name of PostgreSQL sequence
+     * @param listener receives reserved ids
+     */
+    public void onReserve(String sequence, Consumer<List<Integer>> listener) {
+        reserveListeners.put(sequence, listener);
+        blocks.computeIfAbsent(sequence, IdBlock::new).notifyRemaining(listener);
+    }
+
+    /**
+     * Takes count values of sequence with one query
+     */
+    private List<Integer> reserve(String sequence, int count) {
+        try (Connection connection = ConnectionManager.get();
+             PreparedStatement statement = connection.prepareStatement(RESERVE_SQL)) {
+            statement.setObject(1, sequence);
+            statement.setObject(2, count);
+            ResultSet resultSet = statement.executeQuery();
+            List<Integer> ids = new ArrayList<>(count);
+            while (resultSet.next()) {
+                ids.add(resultSet.getObject("id", Long.class).intValue());
+            }
+            return ids;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private class IdBlock {
+        private final String sequence;
+        private final Deque<Integer> ids = new ArrayDeque<>();
+        private final Lock lock = new ReentrantLock();
+
+        private IdBlock(String sequence) {
+            this.sequence = sequence;
+        }
+
+        private Integer next() {
+            lock.lock();
+            try {
+                Integer id = ids.poll();
+                if (id != null) return id;
+            } finally {
+                lock.unlock();
+            }
+
+            //round trip and listener run without the lock, so callers with ids left in the block never wait for them.
+            //Callers finding the block empty at once reserve a block each, spare ids are given out later
+            List<Integer> reserved = reserve(sequence, blockSize);
+            Consumer<List<Integer>> listener = reserveListeners.get(sequence);
+            if (listener != null) listener.accept(reserved);
+
+            lock.lock();
+            try {
+                ids.addAll(reserved);
+                return ids.poll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void notifyRemaining(Consumer<List<Integer>> listener) {
+            lock.lock();
+            try {
+                if (!ids.isEmpty()) listener.accept(List.copyOf(ids));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package dao;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Cache that keeps at most maxSize recently used entities and loads missing ones from database
+ */
+public class LruEntityCache<K extends Comparable<K>, V> implements EntityCache<K, V> {
+    private final Lock lock = new ReentrantLock();
+    private final CacheStats stats = new CacheStats();
+    private final Map<K, V> map;
+
+    public LruEntityCache(int maxSize) {
+        map = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= maxSize) return false;
+                stats.recordEviction();
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public Optional<V> get(K key) {
+        lock.lock();
+        try {
+            V value = map.get(key);
+            if (value == null) stats.recordMiss();
+            else stats.recordHit();
+            return Optional.ofNullable(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Database is queried outside of cache lock, so a slow load does not block other lookups
+     */
+    @Override
+    public Optional<V> get(K key, Function<K, V> loader) {
+        Optional<V> cached = get(key);
+        if (cached.isPresent()) return cached;
+
+        V loaded = loader.apply(key);
+        if (loaded == null) return Optional.empty();
+
+        lock.lock();
+        try {
+            V present = map.putIfAbsent(key, loaded);
+            return Optional.of(present == null ? loaded : present);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        lock.lock();
+        try {
+            map.put(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        lock.lock();
+        try {
+            map.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return map.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return copy of cached entities ordered by id
+     */
+    @Override
+    public Collection<V> values() {
+        lock.lock();
+        try {
+            return new TreeMap<>(map).values();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return copy of cached entities with id greater than key, ordered by id
+     */
+    @Override
+    public Collection<V> valuesAfter(K key) {
+        lock.lock();
+        try {
+            return new TreeMap<>(map).tailMap(key, false).values();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isResident() {
+        return false;
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return stats;
+    }
+}
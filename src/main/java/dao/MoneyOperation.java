@@ -0,0 +1,25 @@
+package dao;
+
+import entity.TransactionType;
+
+import java.util.Optional;
+
+/**
+ * Money operation of a batch
+ *
+ * @param item          number of operation in batch
+ * @param type          TRANSFER, REFILL or WITHDRAW
+ * @param senderAccId   account losing money, null for REFILL
+ * @param receiverAccId account getting money, null for WITHDRAW
+ * @param amount        amount of money
+ */
+public record MoneyOperation(int item, TransactionType type, Integer senderAccId, Integer receiverAccId, Double amount) {
+
+    public Optional<Integer> getSenderAccId() {
+        return Optional.ofNullable(senderAccId);
+    }
+
+    public Optional<Integer> getReceiverAccId() {
+        return Optional.ofNullable(receiverAccId);
+    }
+}
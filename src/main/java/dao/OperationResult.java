@@ -0,0 +1,25 @@
+package dao;
+
+import java.util.Map;
+
+/**
+ * Result of money operation of a batch
+ *
+ * @param item     number of operation in batch
+ * @param error    error message, null if operation succeeded
+ * @param balances new balances of involved accounts by account id, empty if operation failed
+ */
+public record OperationResult(int item, String error, Map<Integer, Double> balances) {
+
+    public static OperationResult succeeded(int item, Map<Integer, Double> balances) {
+        return new OperationResult(item, null, balances);
+    }
+
+    public static OperationResult failed(int item, String error) {
+        return new OperationResult(item, error, Map.of());
+    }
+
+    public boolean isSucceeded() {
+        return error == null;
+    }
+}
@@ -0,0 +1,69 @@
+package dao;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * Cache that keeps every entity of the table and never evicts
+ */
+public class ResidentEntityCache<K extends Comparable<K>, V> implements EntityCache<K, V> {
+    private final ConcurrentNavigableMap<K, V> map = new ConcurrentSkipListMap<>();
+    private final CacheStats stats = new CacheStats();
+
+    @Override
+    public Optional<V> get(K key) {
+        V value = map.get(key);
+        if (value == null) stats.recordMiss();
+        else stats.recordHit();
+        return Optional.ofNullable(value);
+    }
+
+    /**
+     * Loader is never called: resident cache has every entity, so a miss means entity does not exist
+     */
+    @Override
+    public Optional<V> get(K key, Function<K, V> loader) {
+        return get(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        map.put(key, value);
+    }
+
+    @Override
+    public void remove(K key) {
+        map.remove(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return map.values();
+    }
+
+    /**
+     * @return view of entities with id greater than key, no copy is made
+     */
+    @Override
+    public Collection<V> valuesAfter(K key) {
+        return map.tailMap(key, false).values();
+    }
+
+    @Override
+    public boolean isResident() {
+        return true;
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return stats;
+    }
+}
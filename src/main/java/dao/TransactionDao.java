@@ -4,21 +4,68 @@ import entity.Transaction;
 import entity.TransactionType;
 import exception.NoSuchTransactionFoundException;
 import util.ConnectionManager;
+import util.PropertiesUtil;
 
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class TransactionDao implements Dao<Integer, Transaction> {
+    private static final Comparator<IndexEntry> DATE_ORDER = Comparator.comparing(IndexEntry::date)
+            .thenComparing(IndexEntry::id);
+    private static final Integer DEFAULT_GROUP_COMMIT_SIZE = 50;
+    private static final Long DEFAULT_GROUP_COMMIT_WINDOW = 5L;
+    private static final Long DEFAULT_GROUP_COMMIT_TIMEOUT = 30_000L;
+    private static final Integer DEFAULT_FETCH_SIZE = 500;
+    private static final IdAllocator idAllocator = IdAllocator.getInstance();
     private static final TransactionDao INSTANCE = new TransactionDao();
-    private final ConcurrentNavigableMap<Integer, Transaction> transactionMap = new ConcurrentSkipListMap<>();
+    private final EntityCache<Integer, Transaction> transactionCache = EntityCache.of("transaction");
+    private final Lock writeLock = new ReentrantLock();
+    private final ConcurrentNavigableMap<Integer, NavigableSet<IndexEntry>> receiverIndex = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Integer, NavigableSet<IndexEntry>> senderIndex = new ConcurrentSkipListMap<>();
+    private final NavigableSet<IndexEntry> dateIndex = new ConcurrentSkipListSet<>(DATE_ORDER);
+    private final Map<Integer, LongAdder> versions = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Integer, ConcurrentNavigableMap<LocalDate, Turnover>> dailyTurnover = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Integer, ConcurrentNavigableMap<YearMonth, Turnover>> monthlyTurnover = new ConcurrentSkipListMap<>();
 
     private static final String FIND_ALL_SQL = """
             SELECT * FROM transaction;
             """;
+    private static final String FIND_BY_ID_SQL = """
+            SELECT * FROM transaction
+            WHERE id = ?;
+            """;
+    private static final String FIND_BY_IDS_SQL = """
+            SELECT * FROM transaction
+            WHERE id = ANY(?)
+            ORDER BY id;
+            """;
+    private static final String FIND_AFTER_ID_SQL = """
+            SELECT * FROM transaction
+            WHERE id > ?
+            ORDER BY id;
+            """;
+    private static final String FIND_BY_ACC_ID_AND_PERIOD_SQL = """
+            SELECT * FROM transaction
+            WHERE (receiveraccid = ? OR senderaccid = ?) AND date > ? AND date <= ?
+            ORDER BY date, id;
+            """;
+    private static final String FIND_BY_PERIOD_SQL = """
+            SELECT * FROM transaction
+            WHERE date > ? AND date <= ?
+            ORDER BY date, id;
+            """;
 
     private static final String DELETE_SQL = """
             DELETE FROM transaction
@@ -30,16 +77,37 @@ public class TransactionDao implements Dao<Integer, Transaction> {
             WHERE id = ?;
             """;
     private static final String SAVE_SQL = """
-            INSERT INTO transaction(date, type, receiveraccid, senderaccid, total)
-            VALUES(?,?,?,?,?) RETURNING id;
+            INSERT INTO transaction(id, date, type, receiveraccid, senderaccid, total)
+            VALUES(?,?,?,?,?,?);
             """;
-
-
-    {
-        findAll().forEach(transaction -> transactionMap.put(transaction.getId(), transaction));
-    }
+    private static final String ID_SEQUENCE = "transaction_id_seq";
+    private static final String GROUP_COMMIT_ENABLED_KEY = "transaction.group.commit.enabled";
+    private static final String GROUP_COMMIT_SIZE_KEY = "transaction.group.commit.size";
+    private static final String GROUP_COMMIT_WINDOW_KEY = "transaction.group.commit.window.ms";
+    private static final String GROUP_COMMIT_TIMEOUT_KEY = "transaction.group.commit.timeout.ms";
+    private static final String FETCH_SIZE_KEY = "transaction.fetch.size";
+    private final TransactionGroupCommitter groupCommitter;
+    private final int fetchSize;
 
     private TransactionDao() {
+        String size = PropertiesUtil.get(GROUP_COMMIT_SIZE_KEY);
+        String window = PropertiesUtil.get(GROUP_COMMIT_WINDOW_KEY);
+        String timeout = PropertiesUtil.get(GROUP_COMMIT_TIMEOUT_KEY);
+        groupCommitter = Boolean.parseBoolean(PropertiesUtil.get(GROUP_COMMIT_ENABLED_KEY))
+                ? new TransactionGroupCommitter(this::saveAll,
+                size == null ? DEFAULT_GROUP_COMMIT_SIZE : Integer.parseInt(size),
+                window == null ? DEFAULT_GROUP_COMMIT_WINDOW : Long.parseLong(window),
+                timeout == null ? DEFAULT_GROUP_COMMIT_TIMEOUT : Long.parseLong(timeout))
+                : null;
+        String fetch = PropertiesUtil.get(FETCH_SIZE_KEY);
+        fetchSize = fetch == null ? DEFAULT_FETCH_SIZE : Integer.parseInt(fetch);
+
+        //indexes and buckets need every transaction, entities themselves are kept only if cache is resident;
+        //rows come fetchSize at a time from server-side cursor, so the table is never held in memory at once
+        forEachByCursor(FIND_ALL_SQL, transaction -> {
+            if (transactionCache.isResident()) transactionCache.put(transaction.getId(), transaction);
+            index(transaction);
+        });
     }
 
     /**
@@ -51,34 +119,216 @@ public class TransactionDao implements Dao<Integer, Transaction> {
 
 
     /**
-     * @return List of all transactions
+     * @return List of all transactions, read from database if cache is bounded
      */
     @Override
     public List<Transaction> findAll() {
-        if (!transactionMap.isEmpty()) return transactionMap.values().stream().toList();
+        if (transactionCache.isResident() && !transactionCache.isEmpty())
+            return transactionCache.values().stream().toList();
 
-        try (Connection connection = ConnectionManager.get();
-             PreparedStatement statement = connection.prepareStatement(FIND_ALL_SQL)) {
-            ResultSet resultSet = statement.executeQuery();
-            List<Transaction> transactions = new ArrayList<>();
-            while (resultSet.next()) {
-                transactions.add(buildTransaction(resultSet));
+        List<Transaction> transactions = new ArrayList<>();
+        forEachByCursor(FIND_ALL_SQL, transactions::add);
+        return transactions;
+    }
+
+    /**
+     * Passes every transaction to consumer, from cache if it is resident, otherwise fetchSize rows at a time
+     * from server-side cursor
+     *
+     * @param consumer receives each transaction
+     */
+    @Override
+    public void forEach(Consumer<Transaction> consumer) {
+        if (transactionCache.isResident() && !transactionCache.isEmpty()) {
+            transactionCache.values().forEach(consumer);
+            return;
+        }
+        forEachByCursor(FIND_ALL_SQL, consumer);
+    }
+
+    /**
+     * Finds page of transactions, starting after the last transaction of previous page. Pages are ordered
+     * by date and id and are read by range walk over receiver and sender indexes of account, or over date index
+     * of all transactions, from (afterDate, afterId). Type and total are checked on index entries, so the walk
+     * stops as soon as the page is full and only transactions of the page are loaded, with one query
+     *
+     * @param filter    conditions of query
+     * @param afterDate date of the last transaction of previous page, null for the first page; when it is null
+     *                  but afterId is given, date of transaction afterId is used
+     * @param afterId   id of the last transaction of previous page, 0 for the first page
+     * @param limit     maximal page size
+     * @return transactions ordered by date and id
+     */
+    public List<Transaction> findPage(TransactionFilter filter, LocalDateTime afterDate, Integer afterId, int limit) {
+        if (afterDate == null && afterId > 0) afterDate = findById(afterId).map(Transaction::getDate).orElse(null);
+        IndexEntry after = afterDate == null ? null : probe(afterDate, afterId);
+        if (filter.accId() == null) return resolve(findPageInIndex(findInIndexByDates(dateIndex, filter, after), filter, limit));
+
+        //the page is within first pages of both indexes, sender and receiver may be the same account
+        NavigableSet<IndexEntry> page = new TreeSet<>(DATE_ORDER);
+        page.addAll(findPageInIndex(findInIndexByDates(receiverIndex.get(filter.accId()), filter, after), filter, limit));
+        page.addAll(findPageInIndex(findInIndexByDates(senderIndex.get(filter.accId()), filter, after), filter, limit));
+        return resolve(page.stream().limit(limit).toList());
+    }
+
+    /**
+     * @return hit, miss and eviction statistics of transaction cache
+     */
+    public CacheStats getCacheStats() {
+        return transactionCache.getStats();
+    }
+
+    /**
+     * Finds transactions received by account in period of time (from, to), both ends excluded
+     *
+     * @param accId id of receivers account
+     * @param from  start date of period
+     * @param to    finish date of period
+     * @return transactions ordered by date
+     */
+    public List<Transaction> findByReceiverAccIdAndPeriod(Integer accId, LocalDateTime from, LocalDateTime to) {
+        return resolve(findInIndexByPeriod(receiverIndex, accId, from, to));
+    }
+
+    /**
+     * Finds transactions sent by account in period of time (from, to), both ends excluded
+     *
+     * @param accId id of senders account
+     * @param from  start date of period
+     * @param to    finish date of period
+     * @return transactions ordered by date
+     */
+    public List<Transaction> findBySenderAccIdAndPeriod(Integer accId, LocalDateTime from, LocalDateTime to) {
+        return resolve(findInIndexByPeriod(senderIndex, accId, from, to));
+    }
+
+    /**
+     * Calculates income of account in period of time (from, to), both ends excluded.
+     * Whole days and months of the period are taken from turnover buckets, only partial edge days are scanned
+     *
+     * @param accId id of receivers account
+     * @param from  start date of period
+     * @param to    finish date of period
+     * @return sum of received money
+     */
+    public Double getIncomeByAccIdAndPeriod(Integer accId, LocalDateTime from, LocalDateTime to) {
+        return sumByPeriod(receiverIndex, accId, from, to, Turnover::getIncome);
+    }
+
+    /**
+     * Calculates outgo of account in period of time (from, to), both ends excluded.
+     * Whole days and months of the period are taken from turnover buckets, only partial edge days are scanned
+     *
+     * @param accId id of senders account
+     * @param from  start date of period
+     * @param to    finish date of period
+     * @return sum of sent money, positive value
+     */
+    public Double getOutgoByAccIdAndPeriod(Integer accId, LocalDateTime from, LocalDateTime to) {
+        return sumByPeriod(senderIndex, accId, from, to, Turnover::getOutgo);
+    }
+
+    /**
+     * Finds daily turnover buckets of account
+     *
+     * @param accId id of account
+     * @param from  first day, included
+     * @param to    last day, included
+     * @return turnover per day, days without transactions are absent
+     */
+    public NavigableMap<LocalDate, Turnover> findDailyTurnover(Integer accId, LocalDate from, LocalDate to) {
+        return dailyTurnover.getOrDefault(accId, new ConcurrentSkipListMap<>())
+                .subMap(from, true, to, true);
+    }
+
+    /**
+     * Finds monthly turnover buckets of account
+     *
+     * @param accId id of account
+     * @param from  first month, included
+     * @param to    last month, included
+     * @return turnover per month, months without transactions are absent
+     */
+    public NavigableMap<YearMonth, Turnover> findMonthlyTurnover(Integer accId, YearMonth from, YearMonth to) {
+        return monthlyTurnover.getOrDefault(accId, new ConcurrentSkipListMap<>())
+                .subMap(from, true, to, true);
+    }
+
+    /**
+     * Reads transactions received or sent by account in period of time (from, to] one by one in date order.
+     * Rows are fetched from server-side cursor fetchSize at a time, so memory does not grow with their number
+     *
+     * @param accId    id of account
+     * @param from     start date of period, excluded
+     * @param to       finish date of period, included
+     * @param consumer receives each transaction
+     */
+    public void forEachByAccIdAndPeriod(Integer accId, LocalDateTime from, LocalDateTime to, Consumer<Transaction> consumer) {
+        forEachByCursor(FIND_BY_ACC_ID_AND_PERIOD_SQL, consumer, accId, accId, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * Reads transactions with id greater than given one in id order, through server-side cursor
+     *
+     * @param id       id after which transactions are read
+     * @param consumer receives each transaction
+     */
+    public void forEachAfterId(Integer id, Consumer<Transaction> consumer) {
+        forEachByCursor(FIND_AFTER_ID_SQL, consumer, id);
+    }
+
+    /**
+     * Finds transactions by ids. Transactions missing in cache are read with one query
+     *
+     * @param ids transaction ids
+     * @return found transactions ordered by id, ids without transaction are skipped
+     */
+    public List<Transaction> findAllById(Collection<Integer> ids) {
+        List<Transaction> found = new ArrayList<>(ids.size());
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            transactionCache.get(id).ifPresentOrElse(found::add, () -> missing.add(id));
+        }
+
+        if (!missing.isEmpty()) {
+            try (Connection connection = ConnectionManager.get();
+                 PreparedStatement statement = connection.prepareStatement(FIND_BY_IDS_SQL)) {
+                statement.setArray(1, connection.createArrayOf("integer", missing.toArray()));
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    Transaction transaction = buildTransaction(resultSet);
+                    if (transactionCache.isResident()) transactionCache.put(transaction.getId(), transaction);
+                    found.add(transaction);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
-            return transactions;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
+        found.sort(Comparator.comparing(Transaction::getId));
+        return found;
     }
 
     /**
-     * finds transaction by id without throwing NoSuchTransactionFoundException if not found
+     * Reads all transactions in period of time (from, to] one by one in date order, through server-side cursor
+     *
+     * @param from     start date of period, excluded
+     * @param to       finish date of period, included
+     * @param consumer receives each transaction
+     */
+    public void forEachByPeriod(LocalDateTime from, LocalDateTime to, Consumer<Transaction> consumer) {
+        forEachByCursor(FIND_BY_PERIOD_SQL, consumer, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    /**
+     * finds transaction by id without throwing NoSuchTransactionFoundException if not found.
+     * Loads transaction from database if it is not in bounded cache
      *
      * @param id transaction id
      * @return Optional of transaction. Optional.empty if transaction not found
      */
     @Override
     public Optional<Transaction> findById(Integer id) {
-        return Optional.ofNullable(transactionMap.get(id));
+        return transactionCache.get(id, this::load);
     }
 
     /**
@@ -102,10 +352,13 @@ public class TransactionDao implements Dao<Integer, Transaction> {
      */
     @Override
     public boolean delete(Integer id) {
-        if (findById(id).isEmpty()) return false;
+        Optional<Transaction> found = findById(id);
+        if (found.isEmpty()) return false;
 
-        synchronized (this) {
-            transactionMap.remove(id);
+        writeLock.lock();
+        try {
+            transactionCache.remove(id);
+            unindex(found.get());
 
             try (Connection connection = ConnectionManager.get();
                  PreparedStatement statement = connection.prepareStatement(DELETE_SQL)) {
@@ -117,6 +370,8 @@ public class TransactionDao implements Dao<Integer, Transaction> {
             } catch (SQLException e) {
                 throw new RuntimeException(e);
             }
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -128,14 +383,17 @@ public class TransactionDao implements Dao<Integer, Transaction> {
      */
     @Override
     public boolean update(Transaction entity) {
-        if (findById(entity.getId()).isEmpty()) return false;
-        Transaction transaction = transactionMap.get(entity.getId());
+        Optional<Transaction> found = findById(entity.getId());
+        if (found.isEmpty()) return false;
+        Transaction transaction = found.get();
 
         while (true) {
             if (transaction.getLock().tryLock()) break;
         }
 
+        unindex(transaction);
         transaction.setDate(entity.getDate());
+        index(transaction);
 
         try (Connection connection = ConnectionManager.get();
              PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
@@ -153,28 +411,84 @@ public class TransactionDao implements Dao<Integer, Transaction> {
     }
 
     /**
-     * saves transaction using Transaction entity
+     * saves transaction using Transaction entity.
+     * In group commit mode transaction is inserted together with transactions saved concurrently by other threads
      *
      * @param entity transaction to save;
      * @return transaction with assigned id
      */
     @Override
-    public synchronized Transaction save(Transaction entity) {
-        try (Connection connection = ConnectionManager.get();
-             PreparedStatement statement = connection.prepareStatement(SAVE_SQL, Statement.RETURN_GENERATED_KEYS)) {
+    public Transaction save(Transaction entity) {
+        if (groupCommitter != null) return groupCommitter.save(entity);
 
-            statement.setObject(1, Timestamp.valueOf(entity.getDate()));
-            statement.setObject(2, entity.getType().name());
-            statement.setObject(3, entity.getReceiverAccId().orElse(null));
-            statement.setObject(4, entity.getSenderAccId().orElse(null));
-            statement.setObject(5, entity.getTotal());
-            statement.executeUpdate();
+        return saveOne(entity);
+    }
 
-            ResultSet generatedKeys = statement.getGeneratedKeys();
-            generatedKeys.next();
-            entity.setId(generatedKeys.getObject("id", Integer.class));
+    /**
+     * saves all transactions with one JDBC batch in one database transaction.
+     * Ids are taken from preallocated blocks of transaction_id_seq before the batch is sent
+     *
+     * @param entities transactions to save
+     * @see IdAllocator
+     */
+    public void saveAll(List<Transaction> entities) {
+        try (Connection connection = ConnectionManager.get()) {
+            connection.setAutoCommit(false);
+            try {
+                saveAll(connection, entities);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
 
-            transactionMap.put(entity.getId(), entity);
+            entities.forEach(this::cache);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * saves all transactions with one JDBC batch on connection of caller, as part of its database transaction.
+     * Transactions are not cached, caller does it with cache(Transaction) after commit
+     *
+     * @param connection connection with open database transaction
+     * @param entities   transactions to save, ids taken by nextIds(int) before the connection; transactions
+     *                   without id get one here, which may need a second connection to reserve a block
+     * @throws SQLException if batch fails, caller must roll back
+     */
+    public void saveAll(Connection connection, List<Transaction> entities) throws SQLException {
+        entities.stream()
+                .filter(entity -> entity.getId() == null)
+                .forEach(entity -> entity.setId(idAllocator.next(ID_SEQUENCE)));
+
+        try (PreparedStatement statement = connection.prepareStatement(SAVE_SQL)) {
+            for (Transaction entity : entities) {
+                setSaveParameters(statement, entity);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * saves one transaction with its own INSERT. Id is taken from preallocated block of transaction_id_seq.
+     * Needs no lock: ids are unique and cache, indexes and buckets are concurrent
+     *
+     * @param entity transaction to save;
+     * @return transaction with assigned id
+     */
+    private Transaction saveOne(Transaction entity) {
+        entity.setId(idAllocator.next(ID_SEQUENCE));
+
+        try (Connection connection = ConnectionManager.get();
+             PreparedStatement statement = connection.prepareStatement(SAVE_SQL)) {
+            setSaveParameters(statement, entity);
+            statement.executeUpdate();
+
+            cache(entity);
 
             return entity;
         } catch (SQLException e) {
@@ -182,6 +496,320 @@ public class TransactionDao implements Dao<Integer, Transaction> {
         }
     }
 
+    /**
+     * @param accId id of account
+     * @return number which changes whenever a transaction of the account is saved, updated or deleted
+     */
+    public long getVersion(Integer accId) {
+        LongAdder version = versions.get(accId);
+        return version == null ? 0 : version.sum();
+    }
+
+    /**
+     * Takes id for transaction inserted by other DAO, from the same blocks save() uses
+     *
+     * @return id which no other transaction will get
+     */
+    public Integer nextId() {
+        return idAllocator.next(ID_SEQUENCE);
+    }
+
+    /**
+     * Takes ids for one statement of other DAO inserting many transactions
+     *
+     * @param count number of ids
+     * @return ids which no other transaction will get, ascending
+     */
+    public List<Integer> nextIds(int count) {
+        return idAllocator.next(ID_SEQUENCE, count);
+    }
+
+    /**
+     * Sets listener told about every id reserved for transactions before a transaction with it can be committed
+     *
+     * @param listener receives reserved ids
+     * @see IdAllocator#onReserve
+     */
+    public void onIdsReserved(Consumer<List<Integer>> listener) {
+        idAllocator.onReserve(ID_SEQUENCE, listener);
+    }
+
+    /**
+     * Puts transaction that is already stored in database by other DAO into cache and indexes
+     *
+     * @param entity saved transaction with assigned id
+     */
+    public void cache(Transaction entity) {
+        transactionCache.put(entity.getId(), entity);
+        index(entity);
+    }
+
+    /**
+     * Adds transaction to receiver, sender and date indexes and to turnover buckets
+     *
+     * @param transaction transaction with assigned id and date
+     */
+    private void index(Transaction transaction) {
+        IndexEntry entry = new IndexEntry(transaction.getId(), transaction.getDate(), transaction.getType(),
+                transaction.getTotal());
+        transaction.getReceiverAccId().ifPresent(accId ->
+                receiverIndex.computeIfAbsent(accId, id -> new ConcurrentSkipListSet<>(DATE_ORDER)).add(entry));
+        transaction.getSenderAccId().ifPresent(accId ->
+                senderIndex.computeIfAbsent(accId, id -> new ConcurrentSkipListSet<>(DATE_ORDER)).add(entry));
+        dateIndex.add(entry);
+        addTurnover(transaction, transaction.getTotal());
+        changed(transaction);
+    }
+
+    /**
+     * Removes transaction from receiver, sender and date indexes and from turnover buckets.
+     * Must be called before date of transaction changes
+     *
+     * @param transaction indexed transaction
+     */
+    private void unindex(Transaction transaction) {
+        IndexEntry entry = new IndexEntry(transaction.getId(), transaction.getDate(), transaction.getType(),
+                transaction.getTotal());
+        transaction.getReceiverAccId().map(receiverIndex::get).ifPresent(set -> set.remove(entry));
+        transaction.getSenderAccId().map(senderIndex::get).ifPresent(set -> set.remove(entry));
+        dateIndex.remove(entry);
+        addTurnover(transaction, -transaction.getTotal());
+        changed(transaction);
+    }
+
+    /**
+     * Increments versions of receiver and sender accounts
+     */
+    private void changed(Transaction transaction) {
+        transaction.getReceiverAccId().ifPresent(accId -> versions.computeIfAbsent(accId, id -> new LongAdder()).increment());
+        transaction.getSenderAccId().ifPresent(accId -> versions.computeIfAbsent(accId, id -> new LongAdder()).increment());
+    }
+
+    /**
+     * Adds amount to daily and monthly buckets of receiver (as income) and sender (as outgo)
+     *
+     * @param transaction transaction which date and accounts choose buckets
+     * @param amount      amount to add, negative to revert transaction
+     */
+    private void addTurnover(Transaction transaction, Double amount) {
+        LocalDate day = transaction.getDate().toLocalDate();
+        YearMonth month = YearMonth.from(day);
+
+        transaction.getReceiverAccId().ifPresent(accId -> {
+            dayBucket(accId, day).addIncome(amount);
+            monthBucket(accId, month).addIncome(amount);
+        });
+        transaction.getSenderAccId().ifPresent(accId -> {
+            dayBucket(accId, day).addOutgo(amount);
+            monthBucket(accId, month).addOutgo(amount);
+        });
+    }
+
+    private Turnover dayBucket(Integer accId, LocalDate day) {
+        return dailyTurnover.computeIfAbsent(accId, id -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(day, d -> new Turnover());
+    }
+
+    private Turnover monthBucket(Integer accId, YearMonth month) {
+        return monthlyTurnover.computeIfAbsent(accId, id -> new ConcurrentSkipListMap<>())
+                .computeIfAbsent(month, m -> new Turnover());
+    }
+
+    /**
+     * Sums transactions of account in period of time (from, to), both ends excluded:
+     * edge days are scanned through index, whole days and months between them are summed from buckets
+     *
+     * @param index  receiver or sender index
+     * @param accId  id of account
+     * @param from   start date of period
+     * @param to     finish date of period
+     * @param amount income or outgo of a bucket
+     * @return sum of transactions totals
+     */
+    private Double sumByPeriod(Map<Integer, NavigableSet<IndexEntry>> index, Integer accId,
+                               LocalDateTime from, LocalDateTime to, Function<Turnover, Double> amount) {
+        NavigableSet<IndexEntry> transactions = index.get(accId);
+        if (transactions == null || !from.isBefore(to)) return 0d;
+
+        LocalDate firstDay = from.toLocalDate().plusDays(1);
+        LocalDate lastDay = to.toLocalDate();
+        if (firstDay.isAfter(lastDay)) return sum(findInIndexByPeriod(index, accId, from, to));
+
+        double total = sum(transactions.subSet(probe(from, Integer.MAX_VALUE), false,
+                probe(firstDay.atStartOfDay(), Integer.MIN_VALUE), false));
+        total += sum(transactions.subSet(probe(lastDay.atStartOfDay(), Integer.MIN_VALUE), false,
+                probe(to, Integer.MIN_VALUE), false));
+
+        NavigableMap<LocalDate, Turnover> days = dailyTurnover.getOrDefault(accId, new ConcurrentSkipListMap<>());
+        NavigableMap<YearMonth, Turnover> months = monthlyTurnover.getOrDefault(accId, new ConcurrentSkipListMap<>());
+
+        YearMonth firstMonth = firstDay.getDayOfMonth() == 1 ? YearMonth.from(firstDay) : YearMonth.from(firstDay).plusMonths(1);
+        YearMonth lastMonth = YearMonth.from(lastDay);
+        if (!firstMonth.isBefore(lastMonth)) {
+            total += sum(days.subMap(firstDay, true, lastDay, false).values(), amount);
+        } else {
+            total += sum(days.subMap(firstDay, true, firstMonth.atDay(1), false).values(), amount);
+            total += sum(months.subMap(firstMonth, true, lastMonth, false).values(), amount);
+            total += sum(days.subMap(lastMonth.atDay(1), true, lastDay, false).values(), amount);
+        }
+        return total;
+    }
+
+    private double sum(Collection<IndexEntry> entries) {
+        return entries.stream().mapToDouble(IndexEntry::total).sum();
+    }
+
+    private double sum(Collection<Turnover> turnovers, Function<Turnover, Double> amount) {
+        return turnovers.stream().mapToDouble(amount::apply).sum();
+    }
+
+    /**
+     * Performs range query by date over transactions of one account
+     *
+     * @param index receiver or sender index
+     * @param accId id of account
+     * @param from  start date of period, excluded
+     * @param to    finish date of period, excluded
+     * @return index entries ordered by date
+     */
+    private NavigableSet<IndexEntry> findInIndexByPeriod(Map<Integer, NavigableSet<IndexEntry>> index,
+                                                         Integer accId, LocalDateTime from, LocalDateTime to) {
+        NavigableSet<IndexEntry> transactions = index.get(accId);
+        if (transactions == null || !from.isBefore(to)) return Collections.emptyNavigableSet();
+
+        return transactions.subSet(probe(from, Integer.MAX_VALUE), false, probe(to, Integer.MIN_VALUE), false);
+    }
+
+    /**
+     * Performs range query by date of filter, both ends included, starting after the cursor
+     *
+     * @param transactions date ordered index entries, may be null
+     * @param filter       conditions with optional from and to dates
+     * @param after        entry of the last transaction of previous page, null for the first page
+     * @return index entries ordered by date
+     */
+    private NavigableSet<IndexEntry> findInIndexByDates(NavigableSet<IndexEntry> transactions, TransactionFilter filter,
+                                                        IndexEntry after) {
+        if (transactions == null) return Collections.emptyNavigableSet();
+
+        IndexEntry from = filter.from() == null ? null : probe(filter.from(), Integer.MIN_VALUE);
+        boolean inclusive = true;
+        if (after != null && (from == null || DATE_ORDER.compare(after, from) >= 0)) {
+            from = after;
+            inclusive = false;
+        }
+        IndexEntry to = filter.to() == null ? null : probe(filter.to(), Integer.MAX_VALUE);
+        if (from != null && to != null && DATE_ORDER.compare(from, to) > 0) return Collections.emptyNavigableSet();
+
+        if (from != null) transactions = transactions.tailSet(from, inclusive);
+        if (to != null) transactions = transactions.headSet(to, true);
+        return transactions;
+    }
+
+    /**
+     * Walks index entries in their order until page is full
+     *
+     * @param entries index entries of page range
+     * @param filter  conditions of query
+     * @param limit   maximal page size
+     * @return entries of page which match type and total of filter
+     */
+    private List<IndexEntry> findPageInIndex(NavigableSet<IndexEntry> entries, TransactionFilter filter, int limit) {
+        return entries.stream()
+                .filter(entry -> filter.type() == null || filter.type() == entry.type())
+                .filter(entry -> filter.matchesTotal(entry.total()))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Builds index entry used only as a bound of range query
+     *
+     * @param date date of bound
+     * @param id   id of bound, decides the order between transactions with equal date
+     * @return index entry with date and id only
+     */
+    private IndexEntry probe(LocalDateTime date, Integer id) {
+        return new IndexEntry(id, date, null, 0d);
+    }
+
+    /**
+     * Turns index entries into transactions, those which are not in cache are loaded with one query
+     *
+     * @param entries index entries
+     * @return transactions in order of entries
+     */
+    private List<Transaction> resolve(Collection<IndexEntry> entries) {
+        Map<Integer, Transaction> found = new HashMap<>();
+        findAllById(entries.stream().map(IndexEntry::id).toList())
+                .forEach(transaction -> found.put(transaction.getId(), transaction));
+        return entries.stream()
+                .map(entry -> found.get(entry.id()))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Runs query and reads its rows fetchSize at a time from server-side cursor
+     *
+     * @param sql        query returning transactions
+     * @param consumer   receives each transaction
+     * @param parameters query parameters
+     */
+    private void forEachByCursor(String sql, Consumer<Transaction> consumer, Object... parameters) {
+        try (Connection connection = ConnectionManager.get()) {
+            //PostgreSQL driver uses cursor only inside transaction
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(fetchSize);
+                for (int i = 0; i < parameters.length; i++) {
+                    statement.setObject(i + 1, parameters[i]);
+                }
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    consumer.accept(buildTransaction(resultSet));
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads one transaction from database
+     *
+     * @param id transaction id
+     * @return transaction or null if not found
+     */
+    private Transaction load(Integer id) {
+        try (Connection connection = ConnectionManager.get();
+             PreparedStatement statement = connection.prepareStatement(FIND_BY_ID_SQL)) {
+            statement.setObject(1, id);
+            ResultSet resultSet = statement.executeQuery();
+            return resultSet.next() ? buildTransaction(resultSet) : null;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Sets parameters of SAVE_SQL
+     *
+     * @param statement statement prepared from SAVE_SQL
+     * @param entity    transaction with assigned id
+     */
+    private void setSaveParameters(PreparedStatement statement, Transaction entity) throws SQLException {
+        statement.setObject(1, entity.getId());
+        statement.setObject(2, Timestamp.valueOf(entity.getDate()));
+        statement.setObject(3, entity.getType().name());
+        statement.setObject(4, entity.getReceiverAccId().orElse(null));
+        statement.setObject(5, entity.getSenderAccId().orElse(null));
+        statement.setObject(6, entity.getTotal());
+    }
+
     /**
      * Builds transaction from resultSet
      *
@@ -196,4 +824,11 @@ public class TransactionDao implements Dao<Integer, Transaction> {
                 Optional.ofNullable(resultSet.getObject("senderaccid", Integer.class)),
                 resultSet.getObject("total", Double.class));
     }
+
+    /**
+     * Compact copy of transaction fields kept by receiver and sender indexes,
+     * so indexes do not hold whole entities evicted from cache
+     */
+    private record IndexEntry(Integer id, LocalDateTime date, TransactionType type, Double total) {
+    }
 }
@@ -0,0 +1,40 @@
+package dao;
+
+import entity.Transaction;
+import entity.TransactionType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Conditions of transaction page query, null means no condition
+ *
+ * @param accId    account which is receiver or sender
+ * @param type     transaction type
+ * @param from     earliest date, included
+ * @param to       latest date, included
+ * @param minTotal least total, included
+ * @param maxTotal greatest total, included
+ */
+public record TransactionFilter(Integer accId, TransactionType type, LocalDateTime from, LocalDateTime to,
+                                Double minTotal, Double maxTotal) {
+
+    public boolean hasPeriod() {
+        return from != null || to != null;
+    }
+
+    public boolean matches(Transaction transaction) {
+        return (accId == null || transaction.getReceiverAccId().filter(accId::equals).isPresent()
+                                 || transaction.getSenderAccId().filter(accId::equals).isPresent())
+               && (type == null || type == transaction.getType())
+               && matchesDate(transaction.getDate())
+               && matchesTotal(transaction.getTotal());
+    }
+
+    public boolean matchesDate(LocalDateTime date) {
+        return (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to));
+    }
+
+    public boolean matchesTotal(Double total) {
+        return (minTotal == null || total >= minTotal) && (maxTotal == null || total <= maxTotal);
+    }
+}
@@ -0,0 +1,104 @@
+package dao;
+
+import entity.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Collects transactions saved concurrently and inserts them with one JDBC batch.
+ * A batch is flushed when it reaches maximum size or when the window since its first transaction expires
+ */
+class TransactionGroupCommitter {
+    private final BlockingQueue<PendingSave> queue = new LinkedBlockingQueue<>();
+    private final Consumer<List<Transaction>> batchSaver;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final long timeoutMillis;
+
+    /**
+     * @param batchSaver   saves all transactions of a batch and assigns their ids
+     * @param maxBatchSize maximum number of transactions in one batch
+     * @param windowMillis  maximum time the first transaction of a batch waits for others
+     * @param timeoutMillis maximum time a caller waits for its batch to be saved
+     */
+    TransactionGroupCommitter(Consumer<List<Transaction>> batchSaver, int maxBatchSize, long windowMillis, long timeoutMillis) {
+        this.batchSaver = batchSaver;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.timeoutMillis = timeoutMillis;
+
+        Thread flusher = new Thread(this::run, "transaction-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Puts transaction into the next batch and waits until the batch is saved, at most timeoutMillis.
+     * If time is out while transaction is still queued, it is taken out of the queue and never saved;
+     * if its batch is already being inserted, the outcome is unknown to the caller
+     *
+     * @param transaction transaction to save
+     * @return transaction with assigned id
+     * @throws RuntimeException if batch fails or is not saved in time
+     */
+    Transaction save(Transaction transaction) {
+        PendingSave pendingSave = new PendingSave(transaction, new CompletableFuture<>());
+        queue.add(pendingSave);
+        try {
+            return pendingSave.result().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            queue.remove(pendingSave);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            boolean queued = queue.remove(pendingSave);
+            throw new RuntimeException("Transaction was not saved in " + timeoutMillis + " ms"
+                                       + (queued ? "" : ", its batch is still being saved"), e);
+        }
+    }
+
+    private void run() {
+        List<PendingSave> batch = new ArrayList<>(maxBatchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    PendingSave next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Saves batch and completes every caller waiting for it. Errors are caught too: they fail the batch,
+     * the flusher thread survives and keeps serving next batches
+     */
+    private void flush(List<PendingSave> batch) {
+        try {
+            batchSaver.accept(batch.stream().map(PendingSave::transaction).toList());
+            batch.forEach(pendingSave -> pendingSave.result().complete(pendingSave.transaction()));
+        } catch (Throwable e) {
+            batch.forEach(pendingSave -> pendingSave.result().completeExceptionally(e));
+        }
+    }
+
+    private record PendingSave(Transaction transaction, CompletableFuture<Transaction> result) {
+    }
+}
@@ -0,0 +1,38 @@
+package dao;
+
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Income and outgo of one account accumulated over a day or a month
+ */
+public class Turnover {
+    private final DoubleAdder income = new DoubleAdder();
+    private final DoubleAdder outgo = new DoubleAdder();
+
+    /**
+     * @return sum of money received by account
+     */
+    public Double getIncome() {
+        return income.sum();
+    }
+
+    /**
+     * @return sum of money sent by account, positive value
+     */
+    public Double getOutgo() {
+        return outgo.sum();
+    }
+
+    void addIncome(Double amount) {
+        income.add(amount);
+    }
+
+    void addOutgo(Double amount) {
+        outgo.add(amount);
+    }
+
+    @Override
+    public String toString() {
+        return "Turnover(income=" + getIncome() + ", outgo=" + getOutgo() + ")";
+    }
+}
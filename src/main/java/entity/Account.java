@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.util.concurrent.locks.Lock;
@@ -13,11 +14,13 @@ import java.util.concurrent.locks.ReentrantLock;
 @AllArgsConstructor
 @NoArgsConstructor
 public class Account {
+    @ToString.Exclude
     final Lock lock = new ReentrantLock();
     private Integer id;
     private Currency currency;
     private LocalDateTime openingDate;
-    private Double balance;
+    private volatile Double balance;
     private Integer bankId;
     private Integer appUserId;
+    private volatile long version;
 }
@@ -3,6 +3,7 @@ package entity;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -13,6 +14,7 @@ import java.util.concurrent.locks.ReentrantLock;
 @AllArgsConstructor
 @NoArgsConstructor
 public class Transaction {
+    @ToString.Exclude
     final Lock lock = new ReentrantLock();
     private Integer id;
     private LocalDateTime date;
@@ -0,0 +1,4 @@
+package exception;
+
+public class AccountBusyException extends Exception {
+}
@@ -4,6 +4,7 @@ import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
 import thread.MoneyAccrualThread;
+import thread.ReceiptWriterThread;
 import util.ConnectionManager;
 
 @WebListener
@@ -22,14 +23,17 @@ public class ContextListener implements ServletContextListener {
     }
 
     /**
-     * As soon as the server is stopped, the method stops MoneyAccrualThread and closes connection pool
+     * As soon as the server is stopped, the method stops MoneyAccrualThread, prints pending receipts
+     * and closes connection pool
      *
      * @see MoneyAccrualThread
+     * @see ReceiptWriterThread
      * @see ConnectionManager
      */
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
-        moneyAccrualThread.interrupt();
+        moneyAccrualThread.close();
+        ReceiptWriterThread.getInstance().close();
         ConnectionManager.closePool();
         ServletContextListener.super.contextDestroyed(sce);
     }
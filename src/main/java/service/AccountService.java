@@ -1,6 +1,7 @@
 package service;
 
 import dao.AccountDao;
+import dao.AccountFilter;
 import dao.AppUserDao;
 import dao.BankDao;
 import entity.Account;
@@ -12,6 +13,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class AccountService implements EntityService<Account> {
     private static final AccountService INSTANCE = new AccountService();
@@ -30,10 +32,17 @@ public class AccountService implements EntityService<Account> {
     }
 
     /**
-     * <p>Handles request and returns list of accounts, or particular one.</p>
+     * <p>Handles request and returns page of accounts, or particular one.</p>
+     * <p>Pages are ordered by id: next page starts after the id of the last account of previous one.</p>
      *
-     * @param req presence of parameter 'id' in servlet request is up to user
-     * @return list of accounts if parameter 'id' is empty or particular account if 'id' exists
+     * @param req presence of parameter 'id' in servlet request is up to user, without it request may include:
+     *            <p>'after' id of the last account of previous page;</p>
+     *            <p>'limit' page size, capped by page.limit.max;</p>
+     *            <p>'bankid';</p>
+     *            <p>'userid';</p>
+     *            <p>'currency' one of 3 currencies (BYN, USD, EUR);</p>
+     *            <p>'min' and 'max' balance.</p>
+     * @return page of accounts if parameter 'id' is empty or particular account if 'id' exists
      * @see AccountDao
      */
     @Override
@@ -41,7 +50,8 @@ public class AccountService implements EntityService<Account> {
         String id = req.getParameter("id");
         List<Account> accounts;
         if (id == null || id.isEmpty()) {
-            accounts = accountDao.findAll();
+            PageRequest page = PageRequest.of(req);
+            accounts = accountDao.findPage(buildFilter(req), page.afterId(), page.limit());
         } else {
             accounts = new ArrayList<>();
             Optional<Account> account = accountDao.findById(Integer.parseInt(id));
@@ -50,6 +60,19 @@ public class AccountService implements EntityService<Account> {
         return accounts;
     }
 
+    /**
+     * <p>Passes page of accounts to consumer one by one.</p>
+     *
+     * @param req      may include the same page and filter parameters as get
+     * @param consumer receives each account
+     * @see AccountDao
+     */
+    @Override
+    public void forEach(HttpServletRequest req, Consumer<Account> consumer) {
+        PageRequest page = PageRequest.of(req);
+        accountDao.findPage(buildFilter(req), page.afterId(), page.limit()).forEach(consumer);
+    }
+
     /**
      * <p>Handles request and saves new account.</p>
      *
@@ -145,4 +168,18 @@ public class AccountService implements EntityService<Account> {
         accountDao.update(account);
         return "Successfully updated";
     }
+
+    private AccountFilter buildFilter(HttpServletRequest req) {
+        String bankId = req.getParameter("bankid");
+        String userId = req.getParameter("userid");
+        String currency = req.getParameter("currency");
+        String min = req.getParameter("min");
+        String max = req.getParameter("max");
+        return new AccountFilter(
+                bankId == null || bankId.isEmpty() ? null : Integer.valueOf(bankId),
+                userId == null || userId.isEmpty() ? null : Integer.valueOf(userId),
+                currency == null || currency.isEmpty() ? null : Currency.valueOf(currency.toUpperCase()),
+                min == null || min.isEmpty() ? null : Double.valueOf(min),
+                max == null || max.isEmpty() ? null : Double.valueOf(max));
+    }
 }
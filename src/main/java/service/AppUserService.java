@@ -7,6 +7,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class AppUserService implements EntityService<AppUser> {
     private static final AppUserService INSTANCE = new AppUserService();
@@ -43,6 +44,18 @@ public class AppUserService implements EntityService<AppUser> {
         return appUsers;
     }
 
+    /**
+     * <p>Passes all appUsers to consumer one by one, without collecting them into a list.</p>
+     *
+     * @param req      list requests of appUsers take no parameters
+     * @param consumer receives each appUser
+     * @see AppUserDao
+     */
+    @Override
+    public void forEach(HttpServletRequest req, Consumer<AppUser> consumer) {
+        appUserDao.forEach(consumer);
+    }
+
     /**
      * <p>Handles request and saves new appUser.</p>
      *
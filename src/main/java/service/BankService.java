@@ -7,6 +7,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class BankService implements EntityService<Bank> {
     private static final BankService INSTANCE = new BankService();
@@ -43,6 +44,18 @@ public class BankService implements EntityService<Bank> {
         return banks;
     }
 
+    /**
+     * <p>Passes all banks to consumer one by one, without collecting them into a list.</p>
+     *
+     * @param req      list requests of banks take no parameters
+     * @param consumer receives each bank
+     * @see BankDao
+     */
+    @Override
+    public void forEach(HttpServletRequest req, Consumer<Bank> consumer) {
+        bankDao.forEach(consumer);
+    }
+
     /**
      * <p>Handles request and saves new bank.</p>
      *
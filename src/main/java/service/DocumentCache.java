@@ -0,0 +1,67 @@
+package service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Least recently used cache of rendered documents. Each document is stored with version of the data
+ * it was rendered from: asking with another version, or after time to live, removes it
+ *
+ * @param <K> key of document
+ * @param <S> version of data, compared with equals
+ */
+class DocumentCache<K, S> {
+    private final Map<K, Entry<S>> entries;
+    private final Lock lock = new ReentrantLock();
+    private final long ttlMillis;
+
+    /**
+     * @param maxSize   maximal number of documents
+     * @param ttlMillis time a document is served after rendering, 0 for no limit
+     */
+    DocumentCache(int maxSize, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<S>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param key     key of document
+     * @param version current version of data
+     * @return document rendered from this version of data, empty if it is missing, stale or expired
+     */
+    Optional<byte[]> get(K key, S version) {
+        lock.lock();
+        try {
+            Entry<S> entry = entries.get(key);
+            if (entry == null) return Optional.empty();
+            if (!entry.version().equals(version)
+                || ttlMillis > 0 && System.currentTimeMillis() - entry.renderedAt() > ttlMillis) {
+                entries.remove(key);
+                return Optional.empty();
+            }
+            return Optional.of(entry.document());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void put(K key, S version, byte[] document) {
+        lock.lock();
+        try {
+            entries.put(key, new Entry<>(version, System.currentTimeMillis(), document));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Entry<S>(S version, long renderedAt, byte[] document) {
+    }
+}
@@ -3,10 +3,13 @@ package service;
 import jakarta.servlet.http.HttpServletRequest;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface EntityService <T>{
     List<T> get(HttpServletRequest req);
 
+    void forEach(HttpServletRequest req, Consumer<T> consumer);
+
     String save(HttpServletRequest req);
 
     String delete(HttpServletRequest req);
@@ -0,0 +1,242 @@
+package service;
+
+import dao.AccountDao;
+import dao.BankDao;
+import dao.MoneyOperation;
+import dao.OperationResult;
+import entity.TransactionType;
+import exception.AccountBusyException;
+import util.PropertiesUtil;
+import util.Workers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Executes batches of money operations. Batch is read in windows of readChunkSize operations, one window
+ * at a time. Operations of a window are validated before anything is executed, then split into groups
+ * of operations sharing accounts: groups run in parallel on bounded workers, operations of one group
+ * run in batch order, so every account sees its operations in the order of the batch
+ */
+public class MoneyOperationService {
+    private static final String THREADS_KEY = "batch.threads";
+    private static final String LOCK_CHUNK_SIZE_KEY = "batch.lock.chunk.size";
+    private static final String READ_CHUNK_SIZE_KEY = "batch.read.chunk.size";
+    private static final Integer DEFAULT_THREADS = 4;
+    private static final Integer DEFAULT_LOCK_CHUNK_SIZE = 100;
+    private static final Integer DEFAULT_READ_CHUNK_SIZE = 10_000;
+    private static final MoneyOperationService INSTANCE = new MoneyOperationService();
+    private final AccountDao accountDao = AccountDao.getInstance();
+    private final BankDao bankDao = BankDao.getInstance();
+    private final int threads;
+    private final int lockChunkSize;
+    private final int readChunkSize;
+
+    private MoneyOperationService() {
+        String threadCount = PropertiesUtil.get(THREADS_KEY);
+        String chunkSize = PropertiesUtil.get(LOCK_CHUNK_SIZE_KEY);
+        String readSize = PropertiesUtil.get(READ_CHUNK_SIZE_KEY);
+        threads = threadCount == null ? DEFAULT_THREADS : Integer.parseInt(threadCount);
+        lockChunkSize = chunkSize == null ? DEFAULT_LOCK_CHUNK_SIZE : Integer.parseInt(chunkSize);
+        readChunkSize = readSize == null ? DEFAULT_READ_CHUNK_SIZE : Integer.parseInt(readSize);
+    }
+
+    /**
+     * @return Instance of class
+     */
+    public static MoneyOperationService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Reads batch of operations, one per line, and executes it window by window, so only readChunkSize
+     * operations are held at a time. Empty lines are skipped, item number is line number.
+     * Line formats:
+     * <p>TRANSFER;senderAccountId;receiverAccountId;amount</p>
+     * <p>REFILL;accountId;amount</p>
+     * <p>WITHDRAW;accountId;amount</p>
+     *
+     * @param lines    batch text
+     * @param consumer receives result of each operation; malformed lines get failed results right away
+     * @throws IOException if batch can not be read
+     */
+    public void execute(BufferedReader lines, Consumer<OperationResult> consumer) throws IOException {
+        List<MoneyOperation> operations = new ArrayList<>();
+        int item = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            item++;
+            if (line.isBlank()) continue;
+            try {
+                operations.add(parse(item, line.trim()));
+            } catch (IllegalArgumentException e) {
+                consumer.accept(OperationResult.failed(item, "Malformed operation: " + line.trim()));
+            }
+            if (operations.size() == readChunkSize) {
+                execute(operations, consumer);
+                operations = new ArrayList<>();
+            }
+        }
+        execute(operations, consumer);
+    }
+
+    /**
+     * Validates and executes batch of operations, waits until all of them are done.
+     * Lock of every account of a group is taken once per lockChunkSize operations of the group
+     *
+     * @param operations batch of operations
+     * @param consumer   receives result of each operation, called by one thread at a time;
+     *                   results of different groups come in no particular order
+     * @throws RuntimeException thrown by consumer: no result is passed to consumer after its failure
+     *                          and no chunk is started, executed operations are never reported as failed
+     */
+    public void execute(List<MoneyOperation> operations, Consumer<OperationResult> consumer) {
+        Lock lock = new ReentrantLock();
+        AtomicReference<RuntimeException> consumerFailure = new AtomicReference<>();
+        Consumer<OperationResult> results = result -> {
+            lock.lock();
+            try {
+                if (consumerFailure.get() == null) consumer.accept(result);
+            } catch (RuntimeException e) {
+                consumerFailure.set(e);
+            } finally {
+                lock.unlock();
+            }
+        };
+
+        List<MoneyOperation> valid = new ArrayList<>(operations.size());
+        for (MoneyOperation operation : operations) {
+            String error = validate(operation);
+            if (error == null) valid.add(operation);
+            else results.accept(OperationResult.failed(operation.item(), error));
+        }
+
+        ExecutorService workers = Workers.create("money-operations", threads);
+        for (List<MoneyOperation> group : group(valid)) {
+            workers.execute(() -> executeGroup(group, results, consumerFailure));
+        }
+
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+        if (consumerFailure.get() != null) throw consumerFailure.get();
+    }
+
+    /**
+     * Executes group chunk by chunk. Results of a chunk are reported only after the whole chunk is executed:
+     * a chunk fails as a whole only if its accounts could not be locked, then none of its operations was executed
+     */
+    private void executeGroup(List<MoneyOperation> group, Consumer<OperationResult> results,
+                              AtomicReference<RuntimeException> consumerFailure) {
+        for (int from = 0; from < group.size() && consumerFailure.get() == null; from += lockChunkSize) {
+            List<MoneyOperation> chunk = group.subList(from, Math.min(from + lockChunkSize, group.size()));
+            List<OperationResult> executed;
+            try {
+                executed = bankDao.execute(chunk);
+            } catch (AccountBusyException e) {
+                executed = failed(chunk, "Account is busy");
+            } catch (RuntimeException e) {
+                executed = failed(chunk, "Operation failed");
+            }
+            executed.forEach(results);
+        }
+    }
+
+    private List<OperationResult> failed(List<MoneyOperation> chunk, String error) {
+        return chunk.stream().map(operation -> OperationResult.failed(operation.item(), error)).toList();
+    }
+
+    /**
+     * Splits operations into groups connected by shared accounts, e.g. transfers 1->2 and 2->3 and refill of 3
+     * make one group. Operations keep batch order inside group
+     *
+     * @param operations valid operations in batch order
+     * @return groups of operations
+     */
+    List<List<MoneyOperation>> group(List<MoneyOperation> operations) {
+        Map<Integer, Integer> parents = new HashMap<>();
+        for (MoneyOperation operation : operations) {
+            if (operation.type() == TransactionType.TRANSFER)
+                union(parents, operation.senderAccId(), operation.receiverAccId());
+        }
+
+        Map<Integer, List<MoneyOperation>> groups = new LinkedHashMap<>();
+        for (MoneyOperation operation : operations) {
+            Integer account = operation.getSenderAccId().orElse(operation.receiverAccId());
+            groups.computeIfAbsent(find(parents, account), root -> new ArrayList<>()).add(operation);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private Integer find(Map<Integer, Integer> parents, Integer account) {
+        Integer root = account;
+        while (parents.containsKey(root)) {
+            root = parents.get(root);
+        }
+        //path compression
+        while (!account.equals(root)) {
+            Integer parent = parents.get(account);
+            parents.put(account, root);
+            account = parent;
+        }
+        return root;
+    }
+
+    private void union(Map<Integer, Integer> parents, Integer acc1, Integer acc2) {
+        Integer root1 = find(parents, acc1);
+        Integer root2 = find(parents, acc2);
+        if (!root1.equals(root2)) parents.put(root1, root2);
+    }
+
+    /**
+     * @return error message, null if operation can be executed
+     */
+    private String validate(MoneyOperation operation) {
+        if (operation.type() == null) return "Unknown operation type";
+        if (operation.amount() == null || !Double.isFinite(operation.amount()) || operation.amount() <= 0)
+            return "Amount must be positive";
+
+        boolean needsSender = operation.type() != TransactionType.REFILL;
+        boolean needsReceiver = operation.type() != TransactionType.WITHDRAW;
+        if (needsSender != operation.getSenderAccId().isPresent()
+            || needsReceiver != operation.getReceiverAccId().isPresent())
+            return "Wrong accounts for " + operation.type().name();
+        if (needsSender && needsReceiver && operation.senderAccId().equals(operation.receiverAccId()))
+            return "Sender and receiver accounts must be different";
+        if (operation.getSenderAccId().flatMap(accountDao::findById).isEmpty() && needsSender)
+            return "No such account found";
+        if (operation.getReceiverAccId().flatMap(accountDao::findById).isEmpty() && needsReceiver)
+            return "No such account found";
+        return null;
+    }
+
+    private MoneyOperation parse(int item, String line) {
+        String[] fields = line.split(";");
+        TransactionType type = TransactionType.valueOf(fields[0].trim().toUpperCase());
+        int expected = type == TransactionType.TRANSFER ? 4 : 3;
+        if (fields.length != expected) throw new IllegalArgumentException(line);
+
+        Integer first = Integer.valueOf(fields[1].trim());
+        Double amount = Double.valueOf(fields[expected - 1].trim());
+        return switch (type) {
+            case TRANSFER -> new MoneyOperation(item, type, first, Integer.valueOf(fields[2].trim()), amount);
+            case REFILL -> new MoneyOperation(item, type, null, first, amount);
+            case WITHDRAW -> new MoneyOperation(item, type, first, null, amount);
+        };
+    }
+}
@@ -0,0 +1,44 @@
+package service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import util.PropertiesUtil;
+
+import java.time.LocalDateTime;
+
+/**
+ * Keyset page of a list request: entities after the last entity of previous page, at most limit of them.
+ * Transaction pages are ordered by date and id and carry the date of the last transaction as well as its id,
+ * account pages are ordered by id.
+ * Limit is capped by property page.limit.max whatever the client asks
+ *
+ * @param afterDate date of the last entity of previous page, null for the first page or pages ordered by id;
+ *                  null with afterId given means date of entity afterId
+ * @param afterId   id of the last entity of previous page, 0 for the first page
+ * @param limit     page size
+ */
+record PageRequest(LocalDateTime afterDate, Integer afterId, int limit) {
+    private static final String DEFAULT_LIMIT_KEY = "page.limit.default";
+    private static final String MAX_LIMIT_KEY = "page.limit.max";
+    private static final Integer DEFAULT_LIMIT = 100;
+    private static final Integer DEFAULT_MAX_LIMIT = 1000;
+
+    /**
+     * @param req may include parameters 'after', 'afterdate' at ISO format yyyy-MM-ddTHH:mm:ss and 'limit'
+     * @return page of request
+     */
+    static PageRequest of(HttpServletRequest req) {
+        String defaultLimit = PropertiesUtil.get(DEFAULT_LIMIT_KEY);
+        String maxLimit = PropertiesUtil.get(MAX_LIMIT_KEY);
+        int max = maxLimit == null ? DEFAULT_MAX_LIMIT : Integer.parseInt(maxLimit);
+
+        String after = req.getParameter("after");
+        String afterDate = req.getParameter("afterdate");
+        String limit = req.getParameter("limit");
+        int size = limit == null || limit.isEmpty()
+                ? (defaultLimit == null ? DEFAULT_LIMIT : Integer.parseInt(defaultLimit))
+                : Integer.parseInt(limit);
+        return new PageRequest(afterDate == null || afterDate.isEmpty() ? null : LocalDateTime.parse(afterDate),
+                after == null || after.isEmpty() ? 0 : Integer.parseInt(after),
+                Math.max(Math.min(size, max), 1));
+    }
+}
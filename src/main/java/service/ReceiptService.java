@@ -0,0 +1,99 @@
+package service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import util.CheckPrinter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.List;
+
+public class ReceiptService {
+    private static final ReceiptService INSTANCE = new ReceiptService();
+
+    private ReceiptService() {
+    }
+
+    /**
+     * @return Instance of class
+     */
+    public static ReceiptService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * <p>Handles request and writes printed receipt into response, straight from memory-mapped file.</p>
+     *
+     * @param req  must include parameter 'no' receipt number
+     * @param resp servlet response, gets receipt text or error message
+     * @throws IOException if response can not be written
+     * @see CheckPrinter
+     */
+    public void writeReceipt(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        long receiptNo = Long.parseLong(req.getParameter("no"));
+
+        prepareText(resp, "check" + receiptNo + ".txt");
+        OutputStream out = resp.getOutputStream();
+        if (!CheckPrinter.writeReceipt(receiptNo, out)) {
+            writeError(resp, "No such receipt found");
+            return;
+        }
+        out.flush();
+    }
+
+    /**
+     * <p>Handles request and returns numbers of archived receipts of account.</p>
+     *
+     * @param req must include parameter 'accountId'
+     * @return receipt numbers, ascending
+     * @see CheckPrinter
+     */
+    public List<Long> findReceipts(HttpServletRequest req) {
+        return CheckPrinter.findReceiptNumbers(Integer.parseInt(req.getParameter("accountId")));
+    }
+
+    /**
+     * <p>Handles request and writes printed account statement into response, straight from memory-mapped file.</p>
+     * <p>Statement is found by parameter 'no', or by parameters 'month' and 'accountId' for month-end statements.</p>
+     *
+     * @param req  must include parameter 'no' statement number, or parameters:
+     *             <p>'month' at format yyyy-MM;</p>
+     *             <p>'accountId'.</p>
+     * @param resp servlet response, gets statement text or error message
+     * @throws IOException if response can not be written
+     * @see CheckPrinter
+     */
+    public void writeAccountStatement(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String no = req.getParameter("no");
+        Long statementNo = no == null ? null : Long.parseLong(no);
+        YearMonth month = no == null ? YearMonth.parse(req.getParameter("month")) : null;
+        Integer accountId = no == null ? Integer.parseInt(req.getParameter("accountId")) : null;
+
+        prepareText(resp, no == null ? "statement" + accountId + ".txt" : "statement" + statementNo + ".txt");
+        OutputStream out = resp.getOutputStream();
+        boolean found = no == null
+                ? CheckPrinter.writeMonthEndStatement(month, accountId, out)
+                : CheckPrinter.writeAccountStatement(statementNo, out);
+        if (!found) {
+            writeError(resp, "No such statement found");
+            return;
+        }
+        out.flush();
+    }
+
+    private void prepareText(HttpServletResponse resp, String fileName) {
+        resp.setContentType("text/plain");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setHeader("Content-Disposition", "inline; filename=\"" + fileName + "\"");
+    }
+
+    private void writeError(HttpServletResponse resp, String message) throws IOException {
+        resp.reset();
+        resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        resp.setContentType("text/html");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.getWriter().write(message);
+    }
+}
@@ -1,18 +1,83 @@
 package service;
 
+import dao.AccountDao;
+import dao.TransactionDao;
+import entity.Account;
 import exception.NoSuchAccountFoundException;
 import exception.NoSuchUserFoundException;
+import exception.StatementQueueFullException;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import util.CheckPrinter;
+import util.PropertiesUtil;
+import util.Workers;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 public class StatementService {
+    private static final String CACHE_SIZE_KEY = "statement.cache.size";
+    private static final String CACHE_TTL_KEY = "statement.cache.ttl.ms";
+    private static final String RENDER_THREADS_KEY = "statement.render.threads";
+    private static final String RENDER_QUEUE_SIZE_KEY = "statement.render.queue.size";
+    private static final String RETRY_AFTER_KEY = "statement.render.retry.after.s";
+    private static final String JOB_TTL_KEY = "statement.job.ttl.ms";
+    private static final String JOB_MAX_KEY = "statement.job.max";
+    private static final Integer DEFAULT_CACHE_SIZE = 0;
+    private static final Long DEFAULT_CACHE_TTL = 60_000L;
+    private static final Integer DEFAULT_RENDER_THREADS = 2;
+    private static final Integer DEFAULT_RENDER_QUEUE_SIZE = 20;
+    private static final Integer DEFAULT_RETRY_AFTER = 5;
+    private static final Long DEFAULT_JOB_TTL = 600_000L;
+    private static final Integer DEFAULT_JOB_MAX = 100;
+    private static final DateTimeFormatter DATE_FORMATTER = new DateTimeFormatterBuilder()
+            .appendPattern("dd.MM.yyy_HH:mm:ss").toFormatter();
     private static final StatementService INSTANCE = new StatementService();
+    private final AccountDao accountDao = AccountDao.getInstance();
+    private final TransactionDao transactionDao = TransactionDao.getInstance();
+    private final DocumentCache<StatementKey, StatementVersion> statementCache;
+    private final Map<String, StatementJob> jobs = new ConcurrentHashMap<>();
+    private final Semaphore jobSlots;
+    private final Executor renderExecutor;
+    private final int retryAfterSeconds;
+    private final long jobTtl;
 
     private StatementService() {
+        String size = PropertiesUtil.get(CACHE_SIZE_KEY);
+        int cacheSize = size == null ? DEFAULT_CACHE_SIZE : Integer.parseInt(size);
+        String cacheTtl = PropertiesUtil.get(CACHE_TTL_KEY);
+        statementCache = cacheSize > 0
+                ? new DocumentCache<>(cacheSize, cacheTtl == null ? DEFAULT_CACHE_TTL : Long.parseLong(cacheTtl))
+                : null;
+
+        String threads = PropertiesUtil.get(RENDER_THREADS_KEY);
+        String queueSize = PropertiesUtil.get(RENDER_QUEUE_SIZE_KEY);
+        String retryAfter = PropertiesUtil.get(RETRY_AFTER_KEY);
+        String ttl = PropertiesUtil.get(JOB_TTL_KEY);
+        String max = PropertiesUtil.get(JOB_MAX_KEY);
+        renderExecutor = Workers.createRejecting("statement-render",
+                threads == null ? DEFAULT_RENDER_THREADS : Integer.parseInt(threads),
+                queueSize == null ? DEFAULT_RENDER_QUEUE_SIZE : Integer.parseInt(queueSize));
+        retryAfterSeconds = retryAfter == null ? DEFAULT_RETRY_AFTER : Integer.parseInt(retryAfter);
+        jobTtl = ttl == null ? DEFAULT_JOB_TTL : Long.parseLong(ttl);
+        jobSlots = new Semaphore(max == null ? DEFAULT_JOB_MAX : Integer.parseInt(max));
     }
 
     /**
@@ -38,9 +103,8 @@ public class StatementService {
         String from = req.getParameter("from");
         String to = req.getParameter("to");
 
-        DateTimeFormatter formatter = new DateTimeFormatterBuilder().appendPattern("dd.MM.yyy_HH:mm:ss").toFormatter();
-        LocalDateTime fromTime = LocalDateTime.from(formatter.parse(from + "_00:00:00"));
-        LocalDateTime toTime = LocalDateTime.from(formatter.parse(to + "_00:00:00"));
+        LocalDateTime fromTime = parseDate(from);
+        LocalDateTime toTime = parseDate(to);
 
         try {
             CheckPrinter.printMoneyStatement(Integer.parseInt(id), fromTime, toTime);
@@ -52,4 +116,284 @@ public class StatementService {
         }
         return message.toString();
     }
+
+    /**
+     * <p>Handles request and writes money statement as PDF straight into response, without saving it on disk.</p>
+     * <p>Response is chunked unless statement cache is enabled, then document is kept by account and period,
+     * so repeated downloads are served from memory until balance or transactions of the account change,
+     * at most statement.cache.ttl.ms, which also bounds how old its current date is.</p>
+     * <p>If parameter 'ids' is given instead of 'id', statements of all listed accounts are rendered
+     * as pages of one document.</p>
+     *
+     * @param req  must include parameters:
+     *             <p>'id' or 'ids' comma separated;</p>
+     *             <p>'from' date at format dd.MM.yyy;</p>
+     *             <p>'to' date at format dd.MM.yyy.</p>
+     * @param resp servlet response, gets PDF document or error message
+     * @throws IOException if response can not be written
+     * @see CheckPrinter
+     */
+    public void streamStatement(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        LocalDateTime fromTime = parseDate(req.getParameter("from"));
+        LocalDateTime toTime = parseDate(req.getParameter("to"));
+
+        String ids = req.getParameter("ids");
+        Integer id = ids == null ? Integer.parseInt(req.getParameter("id")) : null;
+
+        resp.setContentType("application/pdf");
+        resp.setHeader("Content-Disposition", "attachment; filename=\"" + fileName(id) + "\"");
+        try {
+            if (id == null) {
+                OutputStream out = resp.getOutputStream();
+                CheckPrinter.writeMoneyStatements(parseIds(ids), fromTime, toTime, out);
+                out.flush();
+                return;
+            }
+            if (statementCache == null) {
+                OutputStream out = resp.getOutputStream();
+                CheckPrinter.writeMoneyStatement(id, fromTime, toTime, out);
+                out.flush();
+                return;
+            }
+
+            byte[] document = renderCached(id, fromTime, toTime);
+            resp.setContentLength(document.length);
+            resp.getOutputStream().write(document);
+        } catch (NoSuchAccountFoundException e) {
+            writeError(resp, "No such account found");
+        } catch (NoSuchUserFoundException e) {
+            writeError(resp, "No such user found");
+        }
+    }
+
+    /**
+     * Runs statement task on render threads, so long renders do not hold container threads
+     * and at most statement.render.queue.size renders wait
+     *
+     * @return executor rejecting tasks when its queue is full
+     */
+    public Executor getRenderExecutor() {
+        return renderExecutor;
+    }
+
+    /**
+     * @return seconds client should wait before retrying a rejected request or polling a statement job again
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * <p>Queues rendering of money statement and returns at once. Document is written to a temporary file
+     * and kept until it is downloaded with {@link #writeStatementJob} or statement.job.ttl.ms passes after rendering.
+     * At most statement.job.max jobs, rendering or not downloaded yet, are kept.</p>
+     *
+     * @param req same parameters as {@link #streamStatement}
+     * @return id of statement job
+     * @throws StatementQueueFullException if render queue is full or there are statement.job.max jobs
+     */
+    public String submitStatement(HttpServletRequest req) throws StatementQueueFullException {
+        removeExpiredJobs();
+        LocalDateTime fromTime = parseDate(req.getParameter("from"));
+        LocalDateTime toTime = parseDate(req.getParameter("to"));
+        String ids = req.getParameter("ids");
+        Integer id = ids == null ? Integer.parseInt(req.getParameter("id")) : null;
+        List<Integer> accIds = id == null ? parseIds(ids) : null;
+
+        //slot is taken before the job is added and given back by whoever removes the job from jobs
+        if (!jobSlots.tryAcquire()) throw new StatementQueueFullException();
+        String jobId = UUID.randomUUID().toString();
+        StatementJob job = new StatementJob(fileName(id));
+        jobs.put(jobId, job);
+        try {
+            renderExecutor.execute(() -> renderJob(job, id, accIds, fromTime, toTime));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(jobId);
+            jobSlots.release();
+            throw new StatementQueueFullException();
+        }
+        return jobId;
+    }
+
+    /**
+     * <p>Writes state of statement job: 202 with Retry-After while statement is rendered, PDF document
+     * when it is ready, error message with 404 if account or user is not found or 500 if rendering failed,
+     * 404 if job is unknown or expired.</p>
+     * <p>Job is removed once its document is written.</p>
+     *
+     * @param jobId id returned by {@link #submitStatement}
+     * @param resp  servlet response
+     * @throws IOException if response can not be written
+     */
+    public void writeStatementJob(String jobId, HttpServletResponse resp) throws IOException {
+        removeExpiredJobs();
+        StatementJob job = jobId == null ? null : jobs.get(jobId);
+        if (job == null) {
+            writeError(resp, HttpServletResponse.SC_NOT_FOUND, "No such statement job found");
+            return;
+        }
+        if (!job.isFinished()) {
+            resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+            resp.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+            resp.setContentType("text/html");
+            resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            resp.getWriter().write("Statement is being rendered");
+            return;
+        }
+
+        if (!jobs.remove(jobId, job)) {
+            writeError(resp, HttpServletResponse.SC_NOT_FOUND, "No such statement job found");
+            return;
+        }
+        jobSlots.release();
+        try {
+            if (job.error != null) {
+                writeError(resp, job.status, job.error);
+                return;
+            }
+            resp.setContentType("application/pdf");
+            resp.setHeader("Content-Disposition", "attachment; filename=\"" + job.fileName + "\"");
+            resp.setContentLengthLong(Files.size(job.document));
+            Files.copy(job.document, resp.getOutputStream());
+        } finally {
+            job.discard();
+        }
+    }
+
+    /**
+     * Renders statement of job into temporary file. Job is finished whatever happens, so it can always be polled
+     */
+    private void renderJob(StatementJob job, Integer id, List<Integer> accIds, LocalDateTime from, LocalDateTime to) {
+        Path document = null;
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        String error = "Statement can not be rendered";
+        try {
+            document = Files.createTempFile("statement-job", ".pdf");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(document))) {
+                if (id == null) {
+                    CheckPrinter.writeMoneyStatements(accIds, from, to, out);
+                } else if (statementCache == null) {
+                    CheckPrinter.writeMoneyStatement(id, from, to, out);
+                } else {
+                    out.write(renderCached(id, from, to));
+                }
+            }
+            error = null;
+        } catch (NoSuchAccountFoundException e) {
+            status = HttpServletResponse.SC_NOT_FOUND;
+            error = "No such account found";
+        } catch (NoSuchUserFoundException e) {
+            status = HttpServletResponse.SC_NOT_FOUND;
+            error = "No such user found";
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Statement job failed: " + e);
+        } finally {
+            job.finish(document, status, error);
+        }
+    }
+
+    private byte[] render(Integer id, LocalDateTime from, LocalDateTime to) throws NoSuchAccountFoundException, NoSuchUserFoundException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CheckPrinter.writeMoneyStatement(id, from, to, out);
+        return out.toByteArray();
+    }
+
+    private byte[] renderCached(Integer id, LocalDateTime from, LocalDateTime to) throws NoSuchAccountFoundException, NoSuchUserFoundException {
+        //versions are read before rendering, a change during rendering makes the next request render again
+        StatementVersion version = new StatementVersion(accountDao.findById(id).map(Account::getVersion).orElse(0L),
+                transactionDao.getVersion(id));
+        StatementKey key = new StatementKey(id, from, to);
+        Optional<byte[]> cached = statementCache.get(key, version);
+        if (cached.isPresent()) return cached.get();
+
+        byte[] document = render(id, from, to);
+        statementCache.put(key, version, document);
+        return document;
+    }
+
+    private void removeExpiredJobs() {
+        long now = System.currentTimeMillis();
+        jobs.forEach((jobId, job) -> {
+            //only the caller whose remove succeeds discards the job and gives its slot back
+            if (job.isFinished() && now - job.finishedAt > jobTtl && jobs.remove(jobId, job)) {
+                jobSlots.release();
+                job.discard();
+            }
+        });
+    }
+
+    private LocalDateTime parseDate(String date) {
+        return LocalDateTime.from(DATE_FORMATTER.parse(date + "_00:00:00"));
+    }
+
+    private List<Integer> parseIds(String ids) {
+        return Arrays.stream(ids.split(",")).map(String::trim).map(Integer::valueOf).toList();
+    }
+
+    private String fileName(Integer id) {
+        return "statement" + (id == null ? "s" : id) + ".pdf";
+    }
+
+    private void writeError(HttpServletResponse resp, String message) throws IOException {
+        writeError(resp, HttpServletResponse.SC_OK, message);
+    }
+
+    private void writeError(HttpServletResponse resp, int status, String message) throws IOException {
+        resp.reset();
+        resp.setStatus(status);
+        resp.setContentType("text/html");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.getWriter().write(message);
+    }
+
+    /**
+     * Statement rendered in background. Document file or error is set once, finishedAt is written last
+     */
+    private static class StatementJob {
+        private final String fileName;
+        private volatile Path document;
+        private volatile int status;
+        private volatile String error;
+        private volatile long finishedAt;
+
+        private StatementJob(String fileName) {
+            this.fileName = fileName;
+        }
+
+        private void finish(Path document, int status, String error) {
+            this.document = document;
+            this.status = status;
+            this.error = error;
+            this.finishedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * Deletes document file, job must be already removed
+         */
+        private void discard() {
+            if (document == null) return;
+            try {
+                Files.deleteIfExists(document);
+            } catch (IOException e) {
+                System.out.println("Statement job file " + document + " can not be deleted: " + e);
+            }
+        }
+
+        private boolean isFinished() {
+            return finishedAt != 0;
+        }
+    }
+
+    /**
+     * Identifies rendered statement
+     */
+    private record StatementKey(Integer accId, LocalDateTime from, LocalDateTime to) {
+    }
+
+    /**
+     * Data a statement is rendered from: account version changes with every balance change,
+     * transactions version with every saved, updated or deleted transaction of the account
+     */
+    private record StatementVersion(long account, long transactions) {
+    }
 }
@@ -2,20 +2,25 @@ package service;
 
 import dao.AccountDao;
 import dao.TransactionDao;
+import dao.TransactionFilter;
 import entity.Transaction;
 import entity.TransactionType;
 import jakarta.servlet.http.HttpServletRequest;
+import thread.ReceiptWriterThread;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public class TransactionService implements EntityService<Transaction> {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy_HH:mm:ss");
     private static final TransactionService INSTANCE = new TransactionService();
     private final TransactionDao transactionDao = TransactionDao.getInstance();
     private final AccountDao accountDao = AccountDao.getInstance();
+    private final ReceiptWriterThread receiptWriter = ReceiptWriterThread.getInstance();
 
     private TransactionService() {
     }
@@ -28,10 +33,19 @@ public class TransactionService implements EntityService<Transaction> {
     }
 
     /**
-     * <p>Handles request and returns list of transactions, or particular one.</p>
+     * <p>Handles request and returns page of transactions, or particular one.</p>
+     * <p>Pages are ordered by date and id: next page starts after the date and id of the last transaction
+     * of previous one.</p>
      *
-     * @param req presence of parameter 'id' in servlet request is up to user
-     * @return list of transactions if parameter 'id' is empty or particular transaction if 'id' exists
+     * @param req presence of parameter 'id' in servlet request is up to user, without it request may include:
+     *            <p>'after' id of the last transaction of previous page;</p>
+     *            <p>'afterdate' date of the last transaction of previous page, as it is in response;</p>
+     *            <p>'limit' page size, capped by page.limit.max;</p>
+     *            <p>'accountid' receiver or sender account;</p>
+     *            <p>'type' one of 3 types from TransactionType: (TRANSFER, REFILL, WITHDRAW);</p>
+     *            <p>'from' and 'to' dates at format dd-MM-yyyy_HH:mm:ss, both included;</p>
+     *            <p>'min' and 'max' total.</p>
+     * @return page of transactions if parameter 'id' is empty or particular transaction if 'id' exists
      * @see TransactionDao
      */
     @Override
@@ -39,7 +53,8 @@ public class TransactionService implements EntityService<Transaction> {
         String id = req.getParameter("id");
         List<Transaction> transactions;
         if (id == null || id.isEmpty()) {
-            transactions = transactionDao.findAll();
+            PageRequest page = PageRequest.of(req);
+            transactions = transactionDao.findPage(buildFilter(req), page.afterDate(), page.afterId(), page.limit());
         } else {
             transactions = new ArrayList<>();
             Optional<Transaction> transaction = transactionDao.findById(Integer.parseInt(id));
@@ -48,6 +63,19 @@ public class TransactionService implements EntityService<Transaction> {
         return transactions;
     }
 
+    /**
+     * <p>Passes page of transactions to consumer one by one.</p>
+     *
+     * @param req      may include the same page and filter parameters as get
+     * @param consumer receives each transaction
+     * @see TransactionDao
+     */
+    @Override
+    public void forEach(HttpServletRequest req, Consumer<Transaction> consumer) {
+        PageRequest page = PageRequest.of(req);
+        transactionDao.findPage(buildFilter(req), page.afterDate(), page.afterId(), page.limit()).forEach(consumer);
+    }
+
     /**
      * <p>Handles request and saves new transaction.</p>
      *
@@ -86,7 +114,8 @@ public class TransactionService implements EntityService<Transaction> {
         transaction.setType(type);
         transaction.setTotal(total);
 
-        transactionDao.save(transaction);
+        //transactions entered directly are not money operations and get no receipt
+        receiptWriter.discard(transactionDao.save(transaction).getId());
         return "Successfully saved";
     }
 
@@ -129,4 +158,20 @@ public class TransactionService implements EntityService<Transaction> {
         transactionDao.update(transaction);
         return "Successfully updated";
     }
+
+    private TransactionFilter buildFilter(HttpServletRequest req) {
+        String accId = req.getParameter("accountid");
+        String type = req.getParameter("type");
+        String from = req.getParameter("from");
+        String to = req.getParameter("to");
+        String min = req.getParameter("min");
+        String max = req.getParameter("max");
+        return new TransactionFilter(
+                accId == null || accId.isEmpty() ? null : Integer.valueOf(accId),
+                type == null || type.isEmpty() ? null : TransactionType.valueOf(type.toUpperCase()),
+                from == null || from.isEmpty() ? null : LocalDateTime.from(DATE_FORMATTER.parse(from)),
+                to == null || to.isEmpty() ? null : LocalDateTime.from(DATE_FORMATTER.parse(to)),
+                min == null || min.isEmpty() ? null : Double.valueOf(min),
+                max == null || max.isEmpty() ? null : Double.valueOf(max));
+    }
 }
@@ -0,0 +1,29 @@
+package servlet;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import service.ReceiptService;
+
+import java.io.IOException;
+
+@WebServlet("/account-statements")
+public class AccountStatementServlet extends HttpServlet {
+    private final ReceiptService receiptService = ReceiptService.getInstance();
+
+    /**
+     * <p>Handles request and writes printed account statement in response from memory-mapped file.</p>
+     *
+     * @param req  must include parameter 'no' statement number, or parameters:
+     *             <p>'month' at format yyyy-MM;</p>
+     *             <p>'accountId'.</p>
+     * @param resp servlet response
+     * @see ReceiptService
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        receiptService.writeAccountStatement(req, resp);
+    }
+}
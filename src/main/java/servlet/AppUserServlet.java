@@ -7,6 +7,7 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import service.AppUserService;
+import util.EntityJson;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -23,6 +24,8 @@ public class AppUserServlet extends HttpServlet {
      * <p>Performs this operation by invoking 'get' method from AppUserService.</p>
      * <p>If there is no errors prints on webpage List of appUsers, or one particular appUser
      * otherwise prints error message.</p>
+     * <p>If parameter 'format' is 'json' or Accept header names application/json the response is JSON,
+     * written while entities are read and gzip encoded if client accepts gzip.</p>
      *
      * @param req  presence of parameter 'id' in servlet request is up to user
      * @param resp servlet response
@@ -30,6 +33,11 @@ public class AppUserServlet extends HttpServlet {
      */
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (JsonResponse.accepts(req)) {
+            JsonResponse.writeEntities(req, resp, appUserService, EntityJson::writeAppUser, "No such user found");
+            return;
+        }
+
         resp.setContentType("text/html");
         resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
         PrintWriter writer = resp.getWriter();
@@ -0,0 +1,89 @@
+package servlet;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.experimental.UtilityClass;
+import util.Workers;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Moves long blocking handlers off container threads: request is put into async mode and handled
+ * on another executor, container thread returns to the pool at once.
+ * If servlet does not support async, handler runs on the container thread as before
+ */
+@UtilityClass
+class AsyncDispatcher {
+    //requests submit tasks to job executors, so they are bounded apart from the limit shared by those tasks
+    private final ExecutorService EXECUTOR = Workers.isVirtual()
+            ? Workers.createVirtual("request", Workers.getVirtualParallelism()) : null;
+
+    interface Handler {
+        void handle() throws IOException, ServletException;
+    }
+
+    /**
+     * Handles request on a virtual thread when tasks run on virtual threads, otherwise on the container thread
+     *
+     * @param req     servlet request
+     * @param resp    servlet response
+     * @param handler writes response
+     */
+    static void dispatch(HttpServletRequest req, HttpServletResponse resp, Handler handler) throws IOException, ServletException {
+        if (EXECUTOR == null) {
+            handler.handle();
+            return;
+        }
+        //virtual executor makes caller wait instead of rejecting, handler runs inline only if it is shut down
+        dispatch(req, resp, EXECUTOR, handler, handler);
+    }
+
+    /**
+     * Handles request on given executor
+     *
+     * @param req      servlet request
+     * @param resp     servlet response
+     * @param executor runs handler, may reject it
+     * @param handler  writes response
+     * @param rejected writes response on the container thread if executor rejects handler
+     */
+    static void dispatch(HttpServletRequest req, HttpServletResponse resp, Executor executor,
+                         Handler handler, Handler rejected) throws IOException, ServletException {
+        if (!req.isAsyncSupported()) {
+            handler.handle();
+            return;
+        }
+
+        AsyncContext async = req.startAsync();
+        async.setTimeout(0);
+        try {
+            executor.execute(() -> {
+                try {
+                    handler.handle();
+                } catch (IOException | ServletException | RuntimeException e) {
+                    System.out.println("Request " + req.getRequestURI() + " failed: " + e);
+                    if (!resp.isCommitted()) {
+                        try {
+                            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                        } catch (IOException ignored) {
+                            //client is gone
+                        }
+                    }
+                } finally {
+                    async.complete();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            try {
+                rejected.handle();
+            } finally {
+                async.complete();
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import service.BankService;
+import util.EntityJson;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -23,6 +24,8 @@ public class BankServlet extends HttpServlet {
      * <p>Performs this operation by invoking 'get' method from BankService.</p>
      * <p>If there is no errors prints on webpage List of banks, or one particular bank
      * otherwise prints error message</p>
+     * <p>If parameter 'format' is 'json' or Accept header names application/json the response is JSON,
+     * written while entities are read and gzip encoded if client accepts gzip.</p>
      *
      * @param req  presence of parameter 'id' in servlet request is up to user
      * @param resp servlet response
@@ -30,6 +33,11 @@ public class BankServlet extends HttpServlet {
      */
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (JsonResponse.accepts(req)) {
+            JsonResponse.writeEntities(req, resp, bankService, EntityJson::writeBank, "No such bank found");
+            return;
+        }
+
         resp.setContentType("text/html");
         resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
         PrintWriter writer = resp.getWriter();
@@ -0,0 +1,98 @@
+package servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.experimental.UtilityClass;
+import service.EntityService;
+import util.EntityJson;
+import util.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content negotiation and streaming of JSON responses of entity servlets
+ */
+@UtilityClass
+class JsonResponse {
+    private final String JSON = "application/json";
+
+    /**
+     * JSON is chosen by parameter 'format=json' or by Accept header naming application/json.
+     * Parameter 'format=html' keeps the html page whatever the header says
+     *
+     * @param req servlet request
+     * @return true if client wants JSON
+     */
+    static boolean accepts(HttpServletRequest req) {
+        String format = req.getParameter("format");
+        if (format != null) return "json".equalsIgnoreCase(format);
+
+        String accept = req.getHeader("Accept");
+        return accept != null && accept.contains(JSON);
+    }
+
+    /**
+     * <p>Writes entities as JSON into response while they are read, without collecting them.</p>
+     * <p>If parameter 'id' is present one object is written, or 404 with error object if entity is not found,
+     * otherwise array of entities the list request asks for. Response is gzip encoded if client accepts gzip.</p>
+     *
+     * @param req          servlet request
+     * @param resp         servlet response
+     * @param service      service of entities
+     * @param entityWriter writes one entity
+     * @param notFound     error message if entity with 'id' is not found
+     * @throws IOException if response can not be written
+     */
+    static <T> void writeEntities(HttpServletRequest req, HttpServletResponse resp, EntityService<T> service,
+                                  BiConsumer<JsonWriter, T> entityWriter, String notFound) throws IOException {
+        String id = req.getParameter("id");
+        List<T> found = id == null || id.isEmpty() ? null : service.get(req);
+        if (found != null && found.isEmpty()) resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+
+        try (JsonWriter json = open(req, resp)) {
+            if (found == null) {
+                json.beginArray();
+                service.forEach(req, entity -> entityWriter.accept(json, entity));
+                json.endArray();
+            } else if (found.isEmpty()) {
+                EntityJson.writeError(json, notFound);
+            } else {
+                entityWriter.accept(json, found.get(0));
+            }
+        }
+    }
+
+    /**
+     * Sets JSON content type and opens writer over response stream, gzip compressed if client accepts gzip
+     */
+    private JsonWriter open(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType(JSON);
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.addHeader("Vary", "Accept, Accept-Encoding");
+
+        OutputStream out = resp.getOutputStream();
+        if (acceptsGzip(req)) {
+            resp.setHeader("Content-Encoding", "gzip");
+            out = new GZIPOutputStream(out, true);
+        }
+        return new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    private boolean acceptsGzip(HttpServletRequest req) {
+        String encodings = req.getHeader("Accept-Encoding");
+        if (encodings == null) return false;
+
+        for (String encoding : encodings.split(",")) {
+            String[] parts = encoding.trim().split(";");
+            if (!"gzip".equalsIgnoreCase(parts[0].trim())) continue;
+            return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+}
@@ -0,0 +1,66 @@
+package servlet;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import service.MoneyOperationService;
+import util.EntityJson;
+import util.JsonWriter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@WebServlet(value = "/operations", asyncSupported = true)
+public class MoneyOperationServlet extends HttpServlet {
+    private static final int FLUSH_EVERY = 100;
+    private final MoneyOperationService moneyOperationService = MoneyOperationService.getInstance();
+
+    /**
+     * <p>Handles request and executes batch of money operations.</p>
+     * <p>Results are streamed while operations are executed, one JSON object per line:
+     * {"item":1,"status":"OK","balances":{"1":100.0,"2":50.0}} or {"item":2,"status":"FAILED","error":"..."}.
+     * The last line is a summary {"total":..,"succeeded":..,"failed":..}.</p>
+     * <p>With virtual threads the batch is handled on a virtual thread instead of container thread.</p>
+     *
+     * @param req  body holds one operation per line:
+     *             <p>TRANSFER;senderAccountId;receiverAccountId;amount</p>
+     *             <p>REFILL;accountId;amount</p>
+     *             <p>WITHDRAW;accountId;amount</p>
+     * @param resp servlet response
+     * @see MoneyOperationService
+     */
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        AsyncDispatcher.dispatch(req, resp, () -> executeBatch(req, resp));
+    }
+
+    private void executeBatch(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/x-ndjson");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        PrintWriter writer = resp.getWriter();
+        JsonWriter json = new JsonWriter(writer);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        moneyOperationService.execute(req.getReader(), result -> {
+            EntityJson.writeOperationResult(json, result);
+            writer.write('\n');
+            if (result.isSucceeded()) succeeded.incrementAndGet();
+            else failed.incrementAndGet();
+            //results are written by workers one at a time, flushing often lets the client follow the batch
+            if ((succeeded.get() + failed.get()) % FLUSH_EVERY == 0) json.flush();
+        });
+
+        json.beginObject()
+                .name("total").value(succeeded.get() + failed.get())
+                .name("succeeded").value(succeeded.get())
+                .name("failed").value(failed.get())
+                .endObject();
+        writer.write('\n');
+        json.close();
+    }
+}
@@ -1,5 +1,6 @@
 package servlet;
 
+import exception.StatementQueueFullException;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
@@ -12,7 +13,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 
-@WebServlet("/statement")
+@WebServlet(value = "/statement", asyncSupported = true)
 public class MoneyStatementServlet extends HttpServlet {
     private final StatementService statementService = StatementService.getInstance();
 
@@ -20,6 +21,11 @@ public class MoneyStatementServlet extends HttpServlet {
      * <p>Handles request and prints money statement in statement-money folder.</p>
      * <p>If there is no errors prints on webpage "Statement successfully printed"
      * otherwise prints error message.</p>
+     * <p>If parameter 'output' is 'stream' the statement is not saved, PDF document is sent in response instead.</p>
+     * <p>If parameter 'output' is 'poll' the statement is rendered in background: response is 202 with Location
+     * of statement job, document is downloaded from it with GET when ready.</p>
+     * <p>Statements are rendered on bounded render threads, container thread is released at once.
+     * If render queue is full, response is 503 with Retry-After.</p>
      * @param req must include parameters:
      *            <p>'id';</p>
      *            <p>'from' date at format dd.MM.yyy;</p>
@@ -30,6 +36,59 @@ public class MoneyStatementServlet extends HttpServlet {
      */
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if ("poll".equals(req.getParameter("output"))) {
+            submitStatement(req, resp);
+            return;
+        }
+        AsyncDispatcher.dispatch(req, resp, statementService.getRenderExecutor(),
+                () -> handleStatement(req, resp), () -> writeBusy(resp));
+    }
+
+    /**
+     * <p>Polls statement job created with 'output=poll'.</p>
+     * <p>Response is 202 with Retry-After while statement is rendered, PDF document once it is ready,
+     * 404 if job is unknown, already downloaded or expired.</p>
+     *
+     * @param req  must include parameter 'job'
+     * @param resp servlet response
+     * @see StatementService
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        statementService.writeStatementJob(req.getParameter("job"), resp);
+    }
+
+    private void submitStatement(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String jobId;
+        try {
+            jobId = statementService.submitStatement(req);
+        } catch (StatementQueueFullException e) {
+            writeBusy(resp);
+            return;
+        }
+
+        resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+        resp.setHeader("Location", req.getContextPath() + "/statement?job=" + jobId);
+        resp.setHeader("Retry-After", String.valueOf(statementService.getRetryAfterSeconds()));
+        resp.setContentType("text/html");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.getWriter().write(jobId);
+    }
+
+    private void writeBusy(HttpServletResponse resp) throws IOException {
+        resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        resp.setHeader("Retry-After", String.valueOf(statementService.getRetryAfterSeconds()));
+        resp.setContentType("text/html");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.getWriter().write("Too many statements are being rendered, try again later");
+    }
+
+    private void handleStatement(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if ("stream".equals(req.getParameter("output"))) {
+            statementService.streamStatement(req, resp);
+            return;
+        }
+
         resp.setContentType("text/html");
         resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
         PrintWriter writer = resp.getWriter();
@@ -0,0 +1,44 @@
+package servlet;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import service.ReceiptService;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@WebServlet("/receipts")
+public class ReceiptServlet extends HttpServlet {
+    private final ReceiptService receiptService = ReceiptService.getInstance();
+
+    /**
+     * <p>Handles request and reprints receipt, or lists receipts of account.</p>
+     * <p>If parameter 'no' is present the receipt text is written in response from memory-mapped file,
+     * otherwise numbers of archived receipts of account 'accountId' are printed on webpage.</p>
+     *
+     * @param req  must include parameter 'no' receipt number, or parameter 'accountId'
+     * @param resp servlet response
+     * @see ReceiptService
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (req.getParameter("no") != null) {
+            receiptService.writeReceipt(req, resp);
+            return;
+        }
+
+        resp.setContentType("text/html");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        PrintWriter writer = resp.getWriter();
+        List<Long> receipts = receiptService.findReceipts(req);
+        if (!receipts.isEmpty()) {
+            receipts.forEach(receipt -> writer.write("check" + receipt + "<br>"));
+        } else writer.write("No receipts found");
+        writer.close();
+    }
+}
@@ -8,6 +8,7 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import service.TransactionService;
+import util.EntityJson;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -24,6 +25,8 @@ public class TransactionServlet extends HttpServlet {
      * <p>Performs this operation by invoking 'get' method from TransactionService.</p>
      * <p>If there is no errors prints on webpage List of transactions, or one particular transaction
      * otherwise prints error message</p>
+     * <p>If parameter 'format' is 'json' or Accept header names application/json the response is JSON,
+     * written while entities are read and gzip encoded if client accepts gzip.</p>
      *
      * @param req  presence of parameter 'id' in servlet request is up to user
      * @param resp servlet response
@@ -31,6 +34,11 @@ public class TransactionServlet extends HttpServlet {
      */
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (JsonResponse.accepts(req)) {
+            JsonResponse.writeEntities(req, resp, transactionService, EntityJson::writeTransaction, "No such transaction found");
+            return;
+        }
+
         resp.setContentType("text/html");
         resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
         PrintWriter writer = resp.getWriter();
@@ -0,0 +1,110 @@
+package thread;
+
+import dao.AccountDao;
+import dao.TransactionDao;
+import entity.Account;
+import entity.Transaction;
+import exception.NoSuchAccountFoundException;
+import exception.NoSuchUserFoundException;
+import util.AccountStatementPeriod;
+import util.CheckPrinter;
+import util.PropertiesUtil;
+import util.Workers;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prints month-end account statements (CURRENT_MONTH) for all accounts, or all accounts of a bank.
+ * Transactions of the month are read once and grouped by account, statements are written by a pool of workers.
+ * Every statement goes to account-statement/month-end-{month}/statement{accountId}.txt, so a run started again
+ * for the same month skips accounts whose statements already exist
+ */
+public class AccountStatementJob {
+    private static final String THREADS_KEY = "statement.job.threads";
+    private static final Integer DEFAULT_THREADS = 4;
+    private final AccountDao accountDao = AccountDao.getInstance();
+    private final TransactionDao transactionDao = TransactionDao.getInstance();
+    private final int threads;
+
+    public AccountStatementJob() {
+        String threadCount = PropertiesUtil.get(THREADS_KEY);
+        threads = threadCount == null ? DEFAULT_THREADS : Integer.parseInt(threadCount);
+    }
+
+    /**
+     * Prints statements and waits until all of them are written
+     *
+     * @param bankId id of bank whose accounts get statements, null for all accounts
+     * @return number of statements printed by this run, without ones printed by previous runs
+     */
+    public int run(Integer bankId) {
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        File directory = new File(PropertiesUtil.getYaml("absoluteProjectPath")
+                                  + "\\account-statement\\month-end-" + YearMonth.from(now));
+        if (!directory.exists()) directory.mkdirs();
+
+        List<Account> accounts = accountDao.findAll().stream()
+                .filter(account -> bankId == null || bankId.equals(account.getBankId()))
+                .filter(account -> !statementFile(directory, account).exists())
+                .toList();
+        if (accounts.isEmpty()) {
+            System.out.println("Month-end statements are already printed");
+            return 0;
+        }
+
+        //one pass over transactions of the month instead of one query per account
+        Map<Integer, List<Transaction>> transactionsByAccount = new HashMap<>();
+        accounts.forEach(account -> transactionsByAccount.put(account.getId(), new ArrayList<>()));
+        LocalDateTime monthStart = CheckPrinter.getPeriodStart(AccountStatementPeriod.CURRENT_MONTH, null, now);
+        transactionDao.forEachByPeriod(monthStart, now, transaction -> {
+            transaction.getReceiverAccId().map(transactionsByAccount::get).ifPresent(list -> list.add(transaction));
+            transaction.getSenderAccId().map(transactionsByAccount::get).ifPresent(list -> list.add(transaction));
+        });
+
+        AtomicInteger printed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int reportEvery = Math.max(accounts.size() / 20, 1);
+        ExecutorService workers = Workers.create("account-statement", threads);
+        for (Account account : accounts) {
+            workers.execute(() -> {
+                try {
+                    CheckPrinter.printAccountStatement(AccountStatementPeriod.CURRENT_MONTH, account.getId(), now,
+                            transactionsByAccount.get(account.getId()), statementFile(directory, account));
+                    int done = printed.incrementAndGet();
+                    if (done % reportEvery == 0)
+                        System.out.println("Month-end statements: " + done + " of " + accounts.size() + " printed");
+                } catch (NoSuchAccountFoundException | NoSuchUserFoundException | RuntimeException e) {
+                    failed.incrementAndGet();
+                    System.out.println("Statement of account " + account.getId() + " is not printed: " + e);
+                }
+            });
+        }
+
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+
+        long millis = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), 1);
+        System.out.println("Month-end statements: " + printed.get() + " printed, " + failed.get() + " failed in "
+                           + millis + " ms, " + printed.get() * 1000L / millis + " statements/s");
+        return printed.get();
+    }
+
+    private File statementFile(File directory, Account account) {
+        return new File(directory, "statement" + account.getId() + ".txt");
+    }
+}
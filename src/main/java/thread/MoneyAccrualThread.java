@@ -2,53 +2,308 @@ package thread;
 
 import dao.AccountDao;
 import dao.BankDao;
-import exception.NoSuchAccountFoundException;
-import exception.NoSuchBankFoundException;
+import entity.Account;
+import exception.AccountBusyException;
 import util.PropertiesUtil;
+import util.Workers;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.Month;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class MoneyAccrualThread extends Thread {
-    private Month currMonth = LocalDateTime.now().getMonth();
+/**
+ * Accrues interest on balances of all accounts at the start of every month.
+ * In chunk mode accounts are processed in chunks on a bounded pool of threads, progress is checkpointed
+ * after each chunk. In sql mode PostgreSQL accrues each chunk of accounts of a bank, or of all accounts, with one statement
+ */
+public class MoneyAccrualThread {
+    private static final String CHUNK_SIZE_KEY = "accrual.chunk.size";
+    private static final String THREADS_KEY = "accrual.threads";
+    private static final String RETRY_DELAY_KEY = "accrual.retry.ms";
+    private static final String MODE_KEY = "accrual.mode";
+    private static final String PARTITION_KEY = "accrual.sql.partition";
+    private static final Integer DEFAULT_CHUNK_SIZE = 500;
+    private static final Integer DEFAULT_THREADS = 4;
+    private static final Long DEFAULT_RETRY_DELAY = 60000L;
     private final AccountDao accountDao = AccountDao.getInstance();
     private final BankDao bankDao = BankDao.getInstance();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService chunkExecutor;
+    private final int chunkSize;
+    private final long retryDelayMillis;
+    private final boolean sqlMode;
+    private final boolean partitionByBank;
+    private final Path checkpoint;
+    private final Lock checkpointLock = new ReentrantLock();
+
+    public MoneyAccrualThread() {
+        String chunk = PropertiesUtil.get(CHUNK_SIZE_KEY);
+        String threadCount = PropertiesUtil.get(THREADS_KEY);
+        String retryDelay = PropertiesUtil.get(RETRY_DELAY_KEY);
+        chunkSize = chunk == null ? DEFAULT_CHUNK_SIZE : Integer.parseInt(chunk);
+        int threads = threadCount == null ? DEFAULT_THREADS : Integer.parseInt(threadCount);
+        retryDelayMillis = retryDelay == null ? DEFAULT_RETRY_DELAY : Long.parseLong(retryDelay);
+        sqlMode = "sql".equals(PropertiesUtil.get(MODE_KEY));
+        partitionByBank = !"none".equals(PropertiesUtil.get(PARTITION_KEY));
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "money-accrual-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        chunkExecutor = Workers.create("money-accrual", threads);
+
+        File directory = new File(PropertiesUtil.getYaml("absoluteProjectPath") + "\\accrual");
+        if (!directory.exists()) directory.mkdirs();
+        checkpoint = Path.of(directory.getAbsolutePath(), "accrual.checkpoint");
+    }
+
+    /**
+     * Schedules accrual at the start of the next month. Interrupted accrual is resumed at once from
+     * the checkpointed account of its own month, then every month missed while the application was stopped
+     * is accrued in order up to the current one. On first start only remembers the current month as accrued
+     */
+    public void start() {
+        YearMonth current = YearMonth.now();
+        Checkpoint saved = loadCheckpoint();
+        if (saved == null) {
+            saveCheckpoint(new Checkpoint(current, Integer.MAX_VALUE, true));
+            scheduleNextMonth();
+            return;
+        }
+
+        YearMonth first = saved.completed() ? saved.period().plusMonths(1) : saved.period();
+        if (first.isAfter(current)) {
+            scheduleNextMonth();
+            return;
+        }
+        scheduler.execute(() -> runAccrual(first));
+    }
+
+    /**
+     * Stops scheduling, chunks that already started are finished
+     */
+    public void close() {
+        scheduler.shutdownNow();
+        chunkExecutor.shutdown();
+        try {
+            chunkExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void scheduleNextMonth() {
+        YearMonth next = YearMonth.now().plusMonths(1);
+        long delay = Duration.between(LocalDateTime.now(), next.atDay(1).atStartOfDay()).toMillis();
+        scheduler.schedule(() -> runAccrual(next), Math.max(delay, 0), TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleRetry(YearMonth period) {
+        scheduler.schedule(() -> runAccrual(period), retryDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void runAccrual(YearMonth period) {
+        try {
+            accrualMoney(period);
+        } catch (RuntimeException e) {
+            System.out.println("Accrual for " + period + " failed: " + e);
+            scheduleRetry(period);
+        }
+    }
 
     /**
-     * Runs the MoneyAccrualThread which will regularly, according to a schedule (once every half a minute),
-     * check whether it is necessary to charge
-     * percentage (1% - the value is substituted from the configuration file config.yaml) on the remainder
-     * bills at the end of the month
+     * Accrues interest (percentage from config.yml) for the month to every account after the checkpoint,
+     * then accrues the following month at once if it has already begun, otherwise schedules it.
+     * Retries later if some chunks failed
+     *
+     * @param period month to accrue interest for
      */
-    @Override
-    public void run() {
-        while (true) {
-            System.out.println("Attempting to accrual money...");
-            accrualMoney();
+    private void accrualMoney(YearMonth period) {
+        System.out.println("Accruing money for " + period + "...");
+        long start = System.nanoTime();
+        double percentage = Double.parseDouble(PropertiesUtil.getYaml("bankPercentage"));
+        LocalDateTime date = period.atDay(1).atStartOfDay();
+
+        List<Callable<Integer>> tasks = sqlMode
+                ? createPartitionTasks(percentage, date)
+                : createChunkTasks(period, percentage, date);
+        List<Future<Integer>> results = new ArrayList<>(tasks.size());
+        for (Callable<Integer> task : tasks) {
+            results.add(chunkExecutor.submit(task));
+        }
+
+        int accrued = 0;
+        int failed = 0;
+        for (Future<Integer> result : results) {
             try {
-                MoneyAccrualThread.sleep(30000);
+                accrued += result.get();
+            } catch (ExecutionException e) {
+                failed++;
+                Throwable cause = e.getCause();
+                System.out.println("Accrual " + (sqlMode ? "partition" : "chunk") + " failed: "
+                                   + (cause instanceof AccountBusyException ? "account is busy" : cause));
             } catch (InterruptedException e) {
-                System.out.println("MoneyAccrualService is interrupted");
+                Thread.currentThread().interrupt();
+                return;
             }
         }
+
+        long millis = Math.max(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), 1);
+        System.out.println("Accrued money for " + period + ": " + accrued + " accounts in " + tasks.size()
+                           + (sqlMode ? " partitions, " : " chunks, ") + millis + " ms, "
+                           + accrued * 1000L / millis + " accounts/s, " + failed + " failed");
+
+        if (failed > 0) {
+            scheduleRetry(period);
+            return;
+        }
+        saveCheckpoint(new Checkpoint(period, Integer.MAX_VALUE, true));
+        if (period.isBefore(YearMonth.now())) {
+            //catching up on months missed while the application was stopped
+            scheduler.execute(() -> runAccrual(period.plusMonths(1)));
+            return;
+        }
+        scheduleNextMonth();
     }
 
     /**
-     * Method that will accrual money depending on condition fulfillment
+     * Splits accounts left after the checkpoint into chunks accrued by Java-side calculation
      */
-    private void accrualMoney() {
-        int percentage = Integer.parseInt(PropertiesUtil.getYaml("bankPercentage"));
-        Month temp = LocalDateTime.now().getMonth();
-        if (!temp.equals(currMonth)) {
-            accountDao.findAll().parallelStream().forEach(account ->
-            {
-                try {
-                    bankDao.refill(account.getBalance() * (double) percentage / 100, account.getId());
-                } catch (NoSuchAccountFoundException | NoSuchBankFoundException e) {
-                    throw new RuntimeException(e);
-                }
+    private List<Callable<Integer>> createChunkTasks(YearMonth period, double percentage, LocalDateTime date) {
+        Checkpoint saved = loadCheckpoint();
+        int afterId = saved != null && saved.period().equals(period) ? saved.lastAccountId() : 0;
+        List<Account> accounts = accountDao.findAll().stream()
+                .filter(account -> account.getId() > afterId)
+                .toList();
+
+        List<List<Account>> chunks = new ArrayList<>();
+        for (int i = 0; i < accounts.size(); i += chunkSize) {
+            chunks.add(accounts.subList(i, Math.min(i + chunkSize, accounts.size())));
+        }
+        ChunkProgress progress = new ChunkProgress(period, chunks, afterId);
+
+        List<Callable<Integer>> tasks = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            int chunkNo = i;
+            tasks.add(() -> {
+                int accrued = bankDao.accrueInterest(chunks.get(chunkNo), percentage, date).size();
+                progress.complete(chunkNo);
+                return accrued;
             });
-            currMonth = temp;
+        }
+        return tasks;
+    }
+
+    /**
+     * Creates set-based accruals of at most chunkSize accounts each, accounts of one chunk belong to one bank
+     * unless partition is none. Only accounts of a running chunk are locked. Accounts that were accrued
+     * before a restart are skipped by the statement itself
+     */
+    private List<Callable<Integer>> createPartitionTasks(double percentage, LocalDateTime date) {
+        Map<Integer, List<Account>> partitions = new TreeMap<>();
+        accountDao.findAll().stream()
+                .sorted(Comparator.comparing(Account::getId))
+                .forEach(account -> partitions.computeIfAbsent(partitionByBank ? account.getBankId() : 0,
+                        key -> new ArrayList<>()).add(account));
+
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (List<Account> accounts : partitions.values()) {
+            for (int i = 0; i < accounts.size(); i += chunkSize) {
+                List<Account> chunk = accounts.subList(i, Math.min(i + chunkSize, accounts.size()));
+                tasks.add(() -> bankDao.accrueInterestInDatabase(chunk, percentage, date).size());
+            }
+        }
+        return tasks;
+    }
+
+    private Checkpoint loadCheckpoint() {
+        if (!Files.exists(checkpoint)) return null;
+        try {
+            String[] values = Files.readString(checkpoint, StandardCharsets.UTF_8).trim().split(";");
+            return new Checkpoint(YearMonth.parse(values[0]), Integer.parseInt(values[1]), Boolean.parseBoolean(values[2]));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void saveCheckpoint(Checkpoint saved) {
+        checkpointLock.lock();
+        try {
+            try {
+                Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+                Files.writeString(temp, saved.period() + ";" + saved.lastAccountId() + ";" + saved.completed(),
+                        StandardCharsets.UTF_8);
+                Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.out.println("Accrual checkpoint is not saved: " + e);
+            }
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    /**
+     * Progress of accrual run
+     *
+     * @param period        accrued month
+     * @param lastAccountId id of account up to which all accounts are accrued
+     * @param completed     true if all accounts of the month are accrued
+     */
+    private record Checkpoint(YearMonth period, int lastAccountId, boolean completed) {
+    }
+
+    /**
+     * Tracks chunks finished out of order and moves checkpoint past every leading finished chunk
+     */
+    private class ChunkProgress {
+        private final YearMonth period;
+        private final List<List<Account>> chunks;
+        private final boolean[] done;
+        private final Lock lock = new ReentrantLock();
+        private int nextChunk;
+        private int lastAccountId;
+
+        private ChunkProgress(YearMonth period, List<List<Account>> chunks, int lastAccountId) {
+            this.period = period;
+            this.chunks = chunks;
+            this.done = new boolean[chunks.size()];
+            this.lastAccountId = lastAccountId;
+        }
+
+        private void complete(int chunkNo) {
+            lock.lock();
+            try {
+                done[chunkNo] = true;
+                if (chunkNo != nextChunk) return;
+                while (nextChunk < done.length && done[nextChunk]) {
+                    List<Account> chunk = chunks.get(nextChunk++);
+                    lastAccountId = chunk.get(chunk.size() - 1).getId();
+                }
+                saveCheckpoint(new Checkpoint(period, lastAccountId, false));
+            } finally {
+                lock.unlock();
+            }
         }
     }
 }
@@ -0,0 +1,117 @@
+package thread;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ids of transactions whose receipts may be missing: reserved, but not yet printed or discarded.
+ * File keeps them as ranges under a header, e.g. "unprinted\n101-150,170", so a reserved block takes a few bytes.
+ * File written by older versions holds one id, every receipt up to it is printed
+ */
+class ReceiptCheckpoint {
+    private static final String HEADER = "unprinted";
+    private final NavigableSet<Integer> ids = new ConcurrentSkipListSet<>();
+    //guards file only, ids are concurrent
+    private final Lock lock = new ReentrantLock();
+    private final Path file;
+
+    ReceiptCheckpoint(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads ids recorded by previous run and keeps them until they are removed
+     *
+     * @param previous receives recorded ids, ascending
+     * @return id of checkpoint in old format, every receipt up to it is printed; null for current format
+     */
+    Integer read(List<Integer> previous) {
+        if (!Files.exists(file)) return null;
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty()) return null;
+            if (!HEADER.equals(lines.get(0).trim())) return Integer.parseInt(lines.get(0).trim());
+            if (lines.size() < 2 || lines.get(1).isBlank()) return null;
+
+            for (String range : lines.get(1).split(",")) {
+                String[] bounds = range.trim().split("-");
+                int from = Integer.parseInt(bounds[0]);
+                int to = bounds.length == 1 ? from : Integer.parseInt(bounds[1]);
+                for (int id = from; id <= to; id++) {
+                    previous.add(id);
+                }
+            }
+            ids.addAll(previous);
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Records ids without saving file
+     */
+    void add(Collection<Integer> added) {
+        ids.addAll(added);
+    }
+
+    /**
+     * Forgets id without saving file
+     */
+    void remove(Integer id) {
+        ids.remove(id);
+    }
+
+    /**
+     * Settles ids of previous run: found ones stay recorded all along, the rest leave and file is saved
+     *
+     * @param previous ids read from file
+     * @param found    ids of them, and of old format checkpoint, which have transactions
+     */
+    void recovered(Collection<Integer> previous, Set<Integer> found) {
+        ids.addAll(found);
+        previous.stream().filter(id -> !found.contains(id)).forEach(ids::remove);
+        save();
+    }
+
+    /**
+     * Writes recorded ids to file, replacing it atomically
+     */
+    void save() {
+        lock.lock();
+        try {
+            StringJoiner ranges = new StringJoiner(",");
+            Integer first = null;
+            Integer last = null;
+            for (Integer id : ids) {
+                if (last != null && id == last + 1) {
+                    last = id;
+                    continue;
+                }
+                if (first != null) ranges.add(first.equals(last) ? first.toString() : first + "-" + last);
+                first = id;
+                last = id;
+            }
+            if (first != null) ranges.add(first.equals(last) ? first.toString() : first + "-" + last);
+
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(temp, HEADER + "\n" + ranges, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Receipt checkpoint is not saved: " + e);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
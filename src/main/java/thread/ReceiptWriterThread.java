@@ -0,0 +1,198 @@
+package thread;
+
+import dao.TransactionDao;
+import entity.Transaction;
+import exception.NoSuchAccountFoundException;
+import exception.NoSuchBankFoundException;
+import util.CheckPrinter;
+import util.PropertiesUtil;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ReceiptWriterThread extends Thread {
+    private static final String QUEUE_SIZE_KEY = "receipt.queue.size";
+    private static final String BATCH_SIZE_KEY = "receipt.batch.size";
+    private static final Integer DEFAULT_QUEUE_SIZE = 10000;
+    private static final Integer DEFAULT_BATCH_SIZE = 100;
+    private static final ReceiptWriterThread INSTANCE = new ReceiptWriterThread();
+    private final TransactionDao transactionDao = TransactionDao.getInstance();
+    private final BlockingQueue<Transaction> queue;
+    private final Lock writeLock = new ReentrantLock();
+    private final int batchSize;
+    //has its own lock, so recording reserved ids never waits for a batch of receipts being printed
+    private final ReceiptCheckpoint checkpoint;
+    private final List<Integer> previousIds;
+    private final Integer legacyCheckpoint;
+    private volatile boolean running = true;
+
+    static {
+        INSTANCE.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::close));
+    }
+
+    private ReceiptWriterThread() {
+        super("receipt-writer");
+        setDaemon(true);
+
+        String queueSize = PropertiesUtil.get(QUEUE_SIZE_KEY);
+        String batch = PropertiesUtil.get(BATCH_SIZE_KEY);
+        queue = new ArrayBlockingQueue<>(queueSize == null ? DEFAULT_QUEUE_SIZE : Integer.parseInt(queueSize));
+        batchSize = batch == null ? DEFAULT_BATCH_SIZE : Integer.parseInt(batch);
+
+        File directory = new File(PropertiesUtil.getYaml("absoluteProjectPath") + "\\check");
+        if (!directory.exists()) directory.mkdirs();
+        checkpoint = new ReceiptCheckpoint(Path.of(directory.getAbsolutePath(), "receipt.checkpoint"));
+
+        //checkpoint of previous run is read before ids of this run start to overwrite it
+        previousIds = new ArrayList<>();
+        legacyCheckpoint = checkpoint.read(previousIds);
+        transactionDao.onIdsReserved(this::reserve);
+    }
+
+    /**
+     * @return Instance of class
+     */
+    public static ReceiptWriterThread getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Hands transaction over to the writer. Blocks if the queue is full until the writer catches up
+     *
+     * @param transaction saved transaction to print receipt for
+     */
+    public void submit(Transaction transaction) {
+        //ids are recorded when reserved, this only covers transactions with ids from elsewhere
+        checkpoint.add(List.of(transaction.getId()));
+        try {
+            queue.put(transaction);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Tells the writer that reserved id will get no receipt: transaction with it was not saved
+     * or was saved without money operation. Checkpoint forgets it with the next batch
+     *
+     * @param id reserved transaction id
+     */
+    public void discard(Integer id) {
+        checkpoint.remove(id);
+    }
+
+    /**
+     * @return number of receipts waiting to be printed
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Runs the ReceiptWriterThread which takes transactions from the queue in batches,
+     * prints receipts for them in check folder and saves checkpoint after each batch
+     */
+    @Override
+    public void run() {
+        List<Transaction> recovered = recover();
+        for (int i = 0; i < recovered.size(); i += batchSize) {
+            write(recovered.subList(i, Math.min(i + batchSize, recovered.size())));
+        }
+
+        List<Transaction> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Transaction first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                System.out.println("ReceiptWriterThread is interrupted");
+            }
+        }
+    }
+
+    /**
+     * Stops the writer and prints all receipts left in the queue
+     */
+    public void close() {
+        running = false;
+        interrupt();
+        try {
+            join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Transaction> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        write(rest);
+    }
+
+    /**
+     * Prints receipts for batch of transactions and removes them from checkpoint
+     *
+     * @param batch transactions to print receipts for
+     */
+    private void write(List<Transaction> batch) {
+        if (batch.isEmpty()) return;
+        writeLock.lock();
+        try {
+            for (Transaction transaction : batch) {
+                try {
+                    CheckPrinter.printReceipt(transaction);
+                } catch (NoSuchAccountFoundException | NoSuchBankFoundException | RuntimeException e) {
+                    System.out.println("Receipt for transaction " + transaction.getId() + " is not printed: " + e);
+                }
+            }
+
+            //ids leave checkpoint only once receipts are on disk, a checkpoint saved meanwhile still has them
+            CheckPrinter.syncReceipts();
+            batch.forEach(transaction -> checkpoint.remove(transaction.getId()));
+            checkpoint.save();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Records reserved transaction ids in checkpoint before any transaction with them can be committed,
+     * so receipts are found after a crash whatever order transactions are committed in
+     *
+     * @param ids reserved ids
+     */
+    private void reserve(List<Integer> ids) {
+        checkpoint.add(ids);
+        checkpoint.save();
+    }
+
+    /**
+     * Finds transactions of previous run whose receipts were not printed. Ids recorded without transaction
+     * were never committed, after restart they never will be, so they are dropped
+     *
+     * @return transactions to print receipts for, ordered by id
+     */
+    private List<Transaction> recover() {
+        List<Transaction> recovered = new ArrayList<>(transactionDao.findAllById(previousIds));
+        if (legacyCheckpoint != null) transactionDao.forEachAfterId(legacyCheckpoint, recovered::add);
+
+        Set<Integer> found = new HashSet<>();
+        recovered.forEach(transaction -> found.add(transaction.getId()));
+        checkpoint.recovered(previousIds, found);
+        previousIds.clear();
+        return recovered;
+    }
+}
@@ -0,0 +1,104 @@
+package util;
+
+import lombok.experimental.Delegate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Statement kept by StatementCache. close() only resets it for the next caller,
+ * the physical statement lives as long as it stays in cache
+ */
+class CachedPreparedStatement implements PreparedStatement {
+    @Delegate(types = PreparedStatement.class, excludes = CacheManagedMethods.class)
+    private final PreparedStatement statement;
+    private final Connection connection;
+    private final int defaultFetchSize;
+    private final int defaultFetchDirection;
+    private final int defaultMaxRows;
+    private final int defaultMaxFieldSize;
+    private final int defaultQueryTimeout;
+    private boolean inUse;
+    private boolean evicted;
+
+    CachedPreparedStatement(PreparedStatement statement, Connection connection) throws SQLException {
+        this.statement = statement;
+        this.connection = connection;
+        defaultFetchSize = statement.getFetchSize();
+        defaultFetchDirection = statement.getFetchDirection();
+        defaultMaxRows = statement.getMaxRows();
+        defaultMaxFieldSize = statement.getMaxFieldSize();
+        defaultQueryTimeout = statement.getQueryTimeout();
+    }
+
+    /**
+     * Closes open result set, clears parameters and batch and sets fetch size, fetch direction, max rows,
+     * max field size and query timeout back to values of new statement, so settings of one caller
+     * do not reach the next. Statement evicted while in use is closed for real
+     */
+    @Override
+    public void close() throws SQLException {
+        if (!inUse) return;
+        inUse = false;
+        if (evicted) {
+            statement.close();
+            return;
+        }
+        ResultSet resultSet = statement.getResultSet();
+        if (resultSet != null) resultSet.close();
+        statement.clearParameters();
+        statement.clearBatch();
+        statement.clearWarnings();
+        statement.setFetchSize(defaultFetchSize);
+        statement.setFetchDirection(defaultFetchDirection);
+        statement.setMaxRows(defaultMaxRows);
+        statement.setMaxFieldSize(defaultMaxFieldSize);
+        statement.setQueryTimeout(defaultQueryTimeout);
+    }
+
+    /**
+     * @return true if statement was given back to cache or physical statement is closed
+     */
+    @Override
+    public boolean isClosed() throws SQLException {
+        return !inUse || statement.isClosed();
+    }
+
+    /**
+     * @return pooled connection the statement was prepared on
+     */
+    @Override
+    public Connection getConnection() {
+        return connection;
+    }
+
+    boolean isClosedPhysically() throws SQLException {
+        return statement.isClosed();
+    }
+
+    boolean isInUse() {
+        return inUse;
+    }
+
+    void setInUse(boolean inUse) {
+        this.inUse = inUse;
+    }
+
+    /**
+     * Called when statement leaves cache. Idle statement is closed at once, statement in use on its close()
+     */
+    void evict() throws SQLException {
+        evicted = true;
+        if (!inUse) statement.close();
+    }
+
+    private interface CacheManagedMethods {
+        void close() throws SQLException;
+
+        boolean isClosed() throws SQLException;
+
+        Connection getConnection() throws SQLException;
+    }
+}
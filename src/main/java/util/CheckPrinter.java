@@ -1,10 +1,6 @@
 package util;
 
 
-import com.lowagie.text.*;
-import com.lowagie.text.Font;
-import com.lowagie.text.pdf.BaseFont;
-import com.lowagie.text.pdf.PdfWriter;
 import dao.AccountDao;
 import dao.AppUserDao;
 import dao.BankDao;
@@ -18,13 +14,27 @@ import exception.NoSuchUserFoundException;
 import lombok.experimental.UtilityClass;
 
 
-import java.awt.*;
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeFormatterBuilder;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Formatter;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 @UtilityClass
 public class CheckPrinter {
@@ -32,6 +42,28 @@ public class CheckPrinter {
     private final BankDao bankDao = BankDao.getInstance();
     private final TransactionDao transactionDao = TransactionDao.getInstance();
     private final AppUserDao appUserDao = AppUserDao.getInstance();
+    private final File receiptDirectory = new File(PropertiesUtil.getYaml("absoluteProjectPath") + "\\check");
+    private final File accountStatementDirectory = new File(PropertiesUtil.getYaml("absoluteProjectPath") + "\\account-statement");
+    private final File moneyStatementDirectory = new File(PropertiesUtil.getYaml("absoluteProjectPath") + "\\statement-money");
+    private static final String SEQUENCE_BLOCK_SIZE_KEY = "output.sequence.block.size";
+    private static final Integer DEFAULT_SEQUENCE_BLOCK_SIZE = 100;
+    private final FileSequence receiptSequence = createSequence(receiptDirectory, "check", ".txt");
+    private final FileSequence accountStatementSequence = createSequence(accountStatementDirectory, "statement", ".txt");
+    private final FileSequence moneyStatementSequence = createSequence(moneyStatementDirectory, "receipt", ".pdf");
+    private static final String RECEIPT_STORE_KEY = "receipt.store";
+    private static final String SEGMENT_SIZE_KEY = "receipt.archive.segment.size";
+    private static final String FSYNC_EVERY_KEY = "receipt.archive.fsync.every";
+    private static final String MAPPED_SEGMENTS_KEY = "receipt.archive.mapped.segments";
+    private static final Long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final Integer DEFAULT_FSYNC_EVERY = 100;
+    private static final Integer DEFAULT_MAPPED_SEGMENTS = 16;
+    private final ReceiptArchive receiptArchive = createReceiptArchive();
+    private static final DateTimeFormatter SHARD_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final Pattern SHARD_NAME = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+    private final Map<File, ConcurrentNavigableMap<Long, File>> shardStarts = new ConcurrentHashMap<>();
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyy");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyy HH:mm:ss");
     private static final String RECEIPT = """
             ---------------------------------------------
             |                  Receipt                  |
@@ -89,46 +121,63 @@ public class CheckPrinter {
      * @throws NoSuchUserFoundException    if user that has this account not found
      */
     public static void printMoneyStatement(Integer accId, LocalDateTime from, LocalDateTime to) throws NoSuchAccountFoundException, NoSuchUserFoundException {
-        Account account = accountDao.getById(accId);
-        AppUser appUser = appUserDao.getById(account.getAppUserId());
-        DateTimeFormatter formatter = new DateTimeFormatterBuilder().appendPattern("dd.MM.yyy").toFormatter();
+        File file = nextFile(moneyStatementDirectory, "receipt", moneyStatementSequence.next(), ".pdf");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            writeMoneyStatement(accId, from, to, out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-        Double income = accountDao.getIncomeByIdAndPeriod(accId, from, to);
-        Double outgo = accountDao.getOutgoByIdAndPeriod(accId, from, to);
+    /**
+     * Writes money statement (income and outgo) depending on from-date to to-date as PDF into stream.
+     * Account and user are checked before anything is written. Stream is not closed
+     *
+     * @param accId account id for which the money statement will be written
+     * @param from  start date of calculating income and outgo
+     * @param to    finish date of calculating income and outgo
+     * @param out   stream receiving PDF document, e.g. servlet response
+     * @throws NoSuchAccountFoundException if account with such accId not found
+     * @throws NoSuchUserFoundException    if user that has this account not found
+     */
+    public static void writeMoneyStatement(Integer accId, LocalDateTime from, LocalDateTime to, OutputStream out) throws NoSuchAccountFoundException, NoSuchUserFoundException {
+        StatementRenderer.render(prepareMoneyStatement(accId, from, to), out);
+    }
 
-        String statement =
-                MONEY_STATEMENT.formatted(
-                        appUser.getFullName(),
-                        accId,
-                        account.getCurrency().name(),
-                        account.getOpeningDate().format(formatter),
-                        from.format(formatter) + " - " + to.format(formatter),
-                        LocalDateTime.now().format(new DateTimeFormatterBuilder().appendPattern("dd.MM.yyy HH:mm:ss").toFormatter()),
-                        account.getBalance(),
-                        income,
-                        outgo);
-
-        synchronized (CheckPrinter.class) {
-            try {
-                Document doc = new Document();
-                File directory = new File(PropertiesUtil.getYaml("absoluteProjectPath") + "\\statement-money");
-                if (!directory.exists()) directory.mkdirs();
-
-                PdfWriter writer = PdfWriter.getInstance(doc,
-                        new FileOutputStream(directory.getAbsolutePath() + "\\receipt" + directory.listFiles().length + ".pdf"));
-
-                Font font = new Font(Font.COURIER, 10, Font.getFontStyleFromName(BaseFont.CP1250), Color.BLACK);
-                Chunk chunk = new Chunk(statement, font);
-                doc.open();
-                Paragraph paragraph = new Paragraph("");
-                doc.add(paragraph);
-                doc.add(chunk);
-                doc.close();
-                writer.close();
-            } catch (DocumentException | FileNotFoundException e) {
-                throw new RuntimeException(e);
-            }
+    /**
+     * Writes money statements of many accounts for the same period into one PDF document, one page per account.
+     * Statements are prepared one by one while the document is written. Stream is not closed
+     *
+     * @param accIds account ids for which the money statements will be written
+     * @param from   start date of calculating income and outgo
+     * @param to     finish date of calculating income and outgo
+     * @param out    stream receiving PDF document
+     * @return number of written statements
+     * @throws NoSuchAccountFoundException if one of accounts not found
+     * @throws NoSuchUserFoundException    if user that has one of accounts not found
+     */
+    public static int writeMoneyStatements(List<Integer> accIds, LocalDateTime from, LocalDateTime to, OutputStream out) throws NoSuchAccountFoundException, NoSuchUserFoundException {
+        //accounts are checked before the document is started
+        for (Integer accId : accIds) {
+            appUserDao.getById(accountDao.getById(accId).getAppUserId());
         }
+
+        Iterator<Integer> ids = accIds.iterator();
+        return StatementRenderer.renderAll(new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return ids.hasNext();
+            }
+
+            @Override
+            public String next() {
+                try {
+                    return prepareMoneyStatement(ids.next(), from, to);
+                } catch (NoSuchAccountFoundException | NoSuchUserFoundException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, out);
     }
 
     /**
@@ -143,76 +192,345 @@ public class CheckPrinter {
     public static void printAccountStatement(AccountStatementPeriod period, Integer accId) throws NoSuchAccountFoundException, NoSuchUserFoundException {
         Account account = accountDao.getById(accId);
         AppUser appUser = appUserDao.getById(account.getAppUserId());
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime date = getPeriodStart(period, account, now);
 
+        File file = nextFile(accountStatementDirectory, "statement", accountStatementSequence.next(), ".txt");
+
+        //transactions are streamed from database in date order
+        writeAccountStatement(file, account, appUser, date, now,
+                consumer -> transactionDao.forEachByAccIdAndPeriod(accId, date, now, consumer));
+    }
 
-        DateTimeFormatter dateTimeFormatter = new DateTimeFormatterBuilder()
-                .appendPattern("dd.MM.yyy").toFormatter();
+    /**
+     * Prints account statement from transactions already selected by caller into given file.
+     * File is written under temporary name and renamed when complete, so existing file is always a whole statement
+     *
+     * @param period       one of 3 available periods (CURRENT_YEAR, CURRENT_MONTH, WHOLE_PERIOD)
+     * @param accId        account id for which the account statement will be printed
+     * @param now          end of period, the same for all statements of one run
+     * @param transactions transactions of account ordered by date, may include ones outside of period
+     * @param file         statement file
+     * @throws NoSuchAccountFoundException if account with such accId not found
+     * @throws NoSuchUserFoundException    if user that has this account not found
+     * @see AccountStatementPeriod
+     */
+    public static void printAccountStatement(AccountStatementPeriod period, Integer accId, LocalDateTime now,
+                                             List<Transaction> transactions, File file) throws NoSuchAccountFoundException, NoSuchUserFoundException {
+        Account account = accountDao.getById(accId);
+        AppUser appUser = appUserDao.getById(account.getAppUserId());
+        LocalDateTime date = getPeriodStart(period, account, now);
 
-        LocalDateTime date = switch (period) {
-            case CURRENT_YEAR -> LocalDateTime.now()
-                    .minusMonths(LocalDateTime.now().getMonth().getValue() - 1)
-                    .minusDays(LocalDateTime.now().getDayOfMonth() - 1);
-            case CURRENT_MONTH -> LocalDateTime.now().minusDays(LocalDateTime.now().getDayOfMonth() - 1);
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        writeAccountStatement(temp, account, appUser, date, now, consumer -> transactions.stream()
+                .filter(transaction -> transaction.getDate().isAfter(date) && !transaction.getDate().isAfter(now))
+                .forEach(consumer));
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param period  one of 3 available periods (CURRENT_YEAR, CURRENT_MONTH, WHOLE_PERIOD)
+     * @param account account of statement
+     * @param now     end of period
+     * @return start of period, excluded from statement
+     */
+    public static LocalDateTime getPeriodStart(AccountStatementPeriod period, Account account, LocalDateTime now) {
+        return switch (period) {
+            case CURRENT_YEAR -> now
+                    .minusMonths(now.getMonth().getValue() - 1)
+                    .minusDays(now.getDayOfMonth() - 1);
+            case CURRENT_MONTH -> now.minusDays(now.getDayOfMonth() - 1);
             case WHOLE_PERIOD -> account.getOpeningDate();
         };
+    }
 
-        String statement =
-                ACCOUNT_STATEMENT.formatted(
-                        appUser.getFullName(),
-                        accId,
-                        account.getCurrency().name(),
-                        account.getOpeningDate().format(dateTimeFormatter),
-                        date.format(dateTimeFormatter) + " - " + LocalDateTime.now().format(dateTimeFormatter),
-                        LocalDateTime.now().format(new DateTimeFormatterBuilder().appendPattern("dd.MM.yyy HH:mm:ss").toFormatter()),
-                        account.getBalance());
-
-        synchronized (CheckPrinter.class) {
-            File directory = new File(PropertiesUtil.getYaml("absoluteProjectPath") + "\\account-statement");
-            if (!directory.exists()) directory.mkdirs();
-
-            try (PrintWriter writer = new PrintWriter(directory.getAbsolutePath() + "\\statement" + directory.listFiles().length + ".txt")) {
-
-                writer.write(statement);
-
-                //writing all matching transactions to a file
-                transactionDao.findAll().stream()
-                        .filter(transaction -> Objects.equals(transaction.getReceiverAccId().orElse(0), accId)
-                                               || Objects.equals(transaction.getSenderAccId().orElse(0), accId))
-                        .filter(transaction -> transaction.getDate()
-                                .isAfter(LocalDateTime.from(date)))
-                        .forEach(transaction -> writer.write(TRANSACTION.formatted(
-                                transaction.getDate().format(dateTimeFormatter),
-                                transaction.getType().name(),
-                                Objects.equals(transaction.getSenderAccId().orElse(0), accId) ? -transaction.getTotal() : transaction.getTotal()
-                        )));
-
-            } catch (FileNotFoundException e) {
-                throw new RuntimeException(e);
-            }
+    /**
+     * Writes header and transaction lines of account statement through one buffered formatter
+     *
+     * @param file         statement file
+     * @param account      account of statement
+     * @param appUser      owner of account
+     * @param date         start of period
+     * @param now          end of period
+     * @param transactions passes every transaction of period, in date order, to given consumer
+     */
+    private void writeAccountStatement(File file, Account account, AppUser appUser, LocalDateTime date, LocalDateTime now,
+                                       Consumer<Consumer<Transaction>> transactions) {
+        Integer accId = account.getId();
+        try (Formatter formatter = new Formatter(new BufferedWriter(new FileWriter(file)))) {
+            formatter.format(ACCOUNT_STATEMENT,
+                    appUser.getFullName(),
+                    accId,
+                    account.getCurrency().name(),
+                    account.getOpeningDate().format(DATE_FORMATTER),
+                    date.format(DATE_FORMATTER) + " - " + now.format(DATE_FORMATTER),
+                    now.format(DATE_TIME_FORMATTER),
+                    account.getBalance());
+
+            transactions.accept(transaction -> formatter.format(TRANSACTION,
+                    transaction.getDate().format(DATE_FORMATTER),
+                    transaction.getType().name(),
+                    Objects.equals(transaction.getSenderAccId().orElse(0), accId) ? -transaction.getTotal() : transaction.getTotal()));
+
+            if (formatter.ioException() != null) throw formatter.ioException();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
     /**
-     * Prints receipt depending on transaction in check folder
+     * Prints receipt depending on transaction in check folder, or appends it to receipt archive
+     * if property receipt.store is archive
      *
      * @param transaction transaction to be printed
      * @throws NoSuchBankFoundException    if bank not found
      * @throws NoSuchAccountFoundException if one of accounts(senders or receivers) not found
      * @see Transaction
+     * @see ReceiptArchive
      */
     public static void printReceipt(Transaction transaction) throws NoSuchBankFoundException, NoSuchAccountFoundException {
-        File directory = new File(PropertiesUtil.getYaml("absoluteProjectPath") + "\\check");
+        long receiptNo = receiptSequence.next();
 
-        synchronized (CheckPrinter.class) {
-            if (!directory.exists()) directory.mkdirs();
-            int fileCount = directory.listFiles().length;
+        if (receiptArchive != null) {
+            receiptArchive.append(receiptNo, transaction.getSenderAccId().orElse(null),
+                    transaction.getReceiverAccId().orElse(null), prepareReceipt(transaction, receiptNo));
+            return;
+        }
+
+        try (PrintWriter writer = new PrintWriter(nextFile(receiptDirectory, "check", receiptNo, ".txt"))) {
+            writer.write(prepareReceipt(transaction, receiptNo));
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            try (PrintWriter writer = new PrintWriter("check/check" + fileCount + ".txt")) {
-                writer.write(prepareReceipt(transaction, fileCount));
-            } catch (FileNotFoundException e) {
-                throw new RuntimeException(e);
+    /**
+     * Finds receipt in receipt archive
+     *
+     * @param receiptNo receipt number
+     * @return receipt text, Optional.empty if receipt is not archived or receipts are stored as files
+     */
+    public static Optional<String> findReceipt(long receiptNo) {
+        return receiptArchive == null ? Optional.empty() : receiptArchive.read(receiptNo);
+    }
+
+    /**
+     * Writes receipt into stream from memory-mapped receipt archive or from its check file,
+     * without reading the receipt to heap. Stream is not closed
+     *
+     * @param receiptNo receipt number
+     * @param out       stream receiving receipt text in UTF-8
+     * @return false if there is no such receipt
+     * @throws IOException if stream fails
+     */
+    public static boolean writeReceipt(long receiptNo, OutputStream out) throws IOException {
+        if (receiptArchive != null && receiptArchive.writeTo(receiptNo, Channels.newChannel(out))) return true;
+
+        Optional<File> file = findFile(receiptDirectory, "check", receiptNo, ".txt");
+        if (file.isEmpty()) return false;
+        MappedFileReader.writeTo(file.get(), out);
+        return true;
+    }
+
+    /**
+     * Finds numbers of receipts where account is sender or receiver. Only receipts of receipt archive
+     * are indexed by account, receipts stored as files are not listed
+     *
+     * @param accId account id
+     * @return receipt numbers, ascending
+     */
+    public static List<Long> findReceiptNumbers(Integer accId) {
+        return receiptArchive == null ? List.of() : receiptArchive.findByAccount(accId);
+    }
+
+    /**
+     * Writes printed account statement into stream through memory mapping. Stream is not closed
+     *
+     * @param statementNo number of statement printed by printAccountStatement(period, accId)
+     * @param out         stream receiving statement text
+     * @return false if there is no such statement
+     * @throws IOException if stream fails
+     */
+    public static boolean writeAccountStatement(long statementNo, OutputStream out) throws IOException {
+        Optional<File> file = findFile(accountStatementDirectory, "statement", statementNo, ".txt");
+        if (file.isEmpty()) return false;
+        MappedFileReader.writeTo(file.get(), out);
+        return true;
+    }
+
+    /**
+     * Writes month-end account statement printed by AccountStatementJob into stream through memory mapping.
+     * Stream is not closed
+     *
+     * @param month month of statement
+     * @param accId account id
+     * @param out   stream receiving statement text
+     * @return false if there is no such statement
+     * @throws IOException if stream fails
+     */
+    public static boolean writeMonthEndStatement(YearMonth month, Integer accId, OutputStream out) throws IOException {
+        File file = new File(accountStatementDirectory, "month-end-" + month + File.separator + "statement" + accId + ".txt");
+        if (!file.isFile()) return false;
+        MappedFileReader.writeTo(file, out);
+        return true;
+    }
+
+    /**
+     * Forces receipts appended to receipt archive to disk. Does nothing if receipts are stored as files
+     */
+    public static void syncReceipts() {
+        if (receiptArchive != null) receiptArchive.sync();
+    }
+
+    /**
+     * @return receipt archive in check/archive if property receipt.store is archive, otherwise null
+     */
+    private ReceiptArchive createReceiptArchive() {
+        if (!"archive".equals(PropertiesUtil.get(RECEIPT_STORE_KEY))) return null;
+
+        String segmentSize = PropertiesUtil.get(SEGMENT_SIZE_KEY);
+        String fsyncEvery = PropertiesUtil.get(FSYNC_EVERY_KEY);
+        String mappedSegments = PropertiesUtil.get(MAPPED_SEGMENTS_KEY);
+        return new ReceiptArchive(new File(receiptDirectory, "archive"),
+                segmentSize == null ? DEFAULT_SEGMENT_SIZE : Long.parseLong(segmentSize),
+                fsyncEvery == null ? DEFAULT_FSYNC_EVERY : Integer.parseInt(fsyncEvery),
+                mappedSegments == null ? DEFAULT_MAPPED_SEGMENTS : Integer.parseInt(mappedSegments));
+    }
+
+    /**
+     * Creates persistent sequence of file numbers kept in {prefix}.seq of directory.
+     * When the sequence file does not exist yet, numbering continues after files printed without it
+     *
+     * @param directory directory of printed files
+     * @param prefix    file name prefix
+     * @param suffix    file name suffix
+     * @return sequence of file numbers
+     */
+    private FileSequence createSequence(File directory, String prefix, String suffix) {
+        String blockSize = PropertiesUtil.get(SEQUENCE_BLOCK_SIZE_KEY);
+        return new FileSequence(new File(directory, prefix + ".seq"),
+                blockSize == null ? DEFAULT_SEQUENCE_BLOCK_SIZE : Integer.parseInt(blockSize),
+                () -> countFiles(directory, prefix, suffix));
+    }
+
+    /**
+     * Gives file in subdirectory of today, so no directory grows with the whole history
+     *
+     * @param directory output directory
+     * @param prefix    file name prefix
+     * @param number    file number
+     * @param suffix    file name suffix
+     * @return file in directory/yyyy-MM-dd, the subdirectory is created if absent
+     */
+    private File nextFile(File directory, String prefix, long number, String suffix) {
+        File shard = new File(directory, LocalDate.now().format(SHARD_FORMATTER));
+        if (!shard.exists()) shard.mkdirs();
+        remember(directory, number, shard);
+        return new File(shard, prefix + number + suffix);
+    }
+
+    /**
+     * Finds printed file. Numbers grow with time, so the file is first looked up in the one subdirectory
+     * where the closest smaller known number was printed; yyyy-MM-dd subdirectories, newest first,
+     * and then directory itself, where files were printed before sharding, are scanned only if it is not there
+     *
+     * @param directory output directory
+     * @param prefix    file name prefix
+     * @param number    file number
+     * @param suffix    file name suffix
+     * @return file, Optional.empty if there is no such file
+     */
+    private Optional<File> findFile(File directory, String prefix, long number, String suffix) {
+        String name = prefix + number + suffix;
+        Map.Entry<Long, File> start = shardStarts.getOrDefault(directory, new ConcurrentSkipListMap<>()).floorEntry(number);
+        if (start != null) {
+            File file = new File(start.getValue(), name);
+            if (file.isFile()) return Optional.of(file);
+        }
+
+        File[] shards = directory.listFiles(file -> file.isDirectory() && SHARD_NAME.matcher(file.getName()).matches());
+        if (shards != null) {
+            Arrays.sort(shards, Comparator.comparing(File::getName).reversed());
+            for (File shard : shards) {
+                File file = new File(shard, name);
+                if (file.isFile()) {
+                    remember(directory, number, shard);
+                    return Optional.of(file);
+                }
+            }
+        }
+        File file = new File(directory, name);
+        if (!file.isFile()) return Optional.empty();
+        remember(directory, number, directory);
+        return Optional.of(file);
+    }
+
+    /**
+     * Records that file number lies in shard, unless the closest smaller recorded number already points there,
+     * so only numbers where shard changes are kept
+     */
+    private void remember(File directory, long number, File shard) {
+        ConcurrentNavigableMap<Long, File> starts = shardStarts.computeIfAbsent(directory, d -> new ConcurrentSkipListMap<>());
+        Map.Entry<Long, File> start = starts.floorEntry(number);
+        if (start == null || !start.getValue().equals(shard)) starts.put(number, shard);
+    }
+
+    /**
+     * Counts files printed before numbering was persisted, directly in directory and in its yyyy-MM-dd subdirectories.
+     * Called only once per directory, when its sequence file is created
+     *
+     * @param directory directory of printed files, created if absent
+     * @param prefix    file name prefix
+     * @param suffix    file name suffix
+     * @return number of the next file
+     */
+    private int countFiles(File directory, String prefix, String suffix) {
+        if (!directory.exists()) directory.mkdirs();
+        FilenameFilter printed = (dir, name) -> name.startsWith(prefix) && name.endsWith(suffix);
+        File[] files = directory.listFiles(printed);
+        int count = files == null ? 0 : files.length;
+
+        File[] shards = directory.listFiles(file -> file.isDirectory() && SHARD_NAME.matcher(file.getName()).matches());
+        if (shards != null) {
+            for (File shard : shards) {
+                File[] shardFiles = shard.listFiles(printed);
+                if (shardFiles != null) count += shardFiles.length;
             }
         }
+        return count;
+    }
+
+    /**
+     * Prepares money statement text depending on from-date to to-date
+     *
+     * @param accId account id for which the money statement will be prepared
+     * @param from  start date of calculating income and outgo
+     * @param to    finish date of calculating income and outgo
+     * @return String - statement prepared for rendering
+     * @throws NoSuchAccountFoundException if account with such accId not found
+     * @throws NoSuchUserFoundException    if user that has this account not found
+     */
+    private String prepareMoneyStatement(Integer accId, LocalDateTime from, LocalDateTime to) throws NoSuchAccountFoundException, NoSuchUserFoundException {
+        Account account = accountDao.getById(accId);
+        AppUser appUser = appUserDao.getById(account.getAppUserId());
+
+        Double income = accountDao.getIncomeByIdAndPeriod(accId, from, to);
+        Double outgo = accountDao.getOutgoByIdAndPeriod(accId, from, to);
+
+        return MONEY_STATEMENT.formatted(
+                appUser.getFullName(),
+                accId,
+                account.getCurrency().name(),
+                account.getOpeningDate().format(DATE_FORMATTER),
+                from.format(DATE_FORMATTER) + " - " + to.format(DATE_FORMATTER),
+                LocalDateTime.now().format(DATE_TIME_FORMATTER),
+                account.getBalance(),
+                income,
+                outgo);
     }
 
     /**
@@ -225,7 +543,7 @@ public class CheckPrinter {
      * @throws NoSuchBankFoundException    if bank not found
      * @see Transaction
      */
-    private String prepareReceipt(Transaction transaction, int receiptNo) throws NoSuchAccountFoundException, NoSuchBankFoundException {
+    private String prepareReceipt(Transaction transaction, long receiptNo) throws NoSuchAccountFoundException, NoSuchBankFoundException {
         Account senderAccount;
         Account receiverAccount;
 
@@ -245,8 +563,8 @@ public class CheckPrinter {
 
         return RECEIPT.formatted(
                 receiptNo,
-                transaction.getDate().format(DateTimeFormatter.ofPattern("HH:mm:ss")),
-                transaction.getDate().format(DateTimeFormatter.ofPattern("dd.MM.yyy")),
+                transaction.getDate().format(TIME_FORMATTER),
+                transaction.getDate().format(DATE_FORMATTER),
                 transaction.getType().name(),
                 senderBankName,
                 receiverBankName,
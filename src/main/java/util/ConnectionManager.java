@@ -4,13 +4,7 @@ package util;
 import lombok.SneakyThrows;
 import lombok.experimental.UtilityClass;
 
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 
 @UtilityClass
 public class ConnectionManager {
@@ -18,9 +12,22 @@ public class ConnectionManager {
     private static final String USERNAME_KEY = "db.user";
     private static final String URL_KEY = "db.url";
     private static final String POOL_SIZE_KEY = "db.pool.size";
+    private static final String POOL_MIN_SIZE_KEY = "db.pool.min.size";
+    private static final String ACQUIRE_TIMEOUT_KEY = "db.pool.acquire.timeout.ms";
+    private static final String VALIDATE_IDLE_KEY = "db.pool.validate.idle.ms";
+    private static final String HOUSEKEEPING_KEY = "db.pool.housekeeping.ms";
+    private static final String LEAK_THRESHOLD_KEY = "db.pool.leak.threshold.ms";
+    private static final String STATEMENT_CACHE_SIZE_KEY = "db.statement.cache.size";
+    private static final String PREPARE_THRESHOLD_KEY = "db.statement.prepare.threshold";
     private static final Integer DEFAULT_POOL_SIZE = 20;
-    private static BlockingQueue<Connection> pool;
-    private static List<Connection> sourceConnections;
+    private static final Integer DEFAULT_POOL_MIN_SIZE = 5;
+    private static final Long DEFAULT_ACQUIRE_TIMEOUT = 30000L;
+    private static final Long DEFAULT_VALIDATE_IDLE = 30000L;
+    private static final Long DEFAULT_HOUSEKEEPING = 30000L;
+    private static final Long DEFAULT_LEAK_THRESHOLD = 0L;
+    private static final Integer DEFAULT_STATEMENT_CACHE_SIZE = 50;
+    private static final Integer DEFAULT_PREPARE_THRESHOLD = 1;
+    private static ConnectionPool pool;
 
     static {
         loadDriver();
@@ -39,19 +46,19 @@ public class ConnectionManager {
      * Initializes connection pool
      */
     private static void initConnectionPool() {
-        String poolSize = PropertiesUtil.get(POOL_SIZE_KEY);
-        int size = poolSize == null ? DEFAULT_POOL_SIZE : Integer.parseInt(poolSize);
-        pool = new ArrayBlockingQueue<>(size);
-        sourceConnections = new ArrayList<>(size);
-        for (int i = 0; i < size; i++) {
-            Connection connection = open();
-            Connection proxyConnection = (Connection) Proxy.newProxyInstance(ConnectionManager.class.getClassLoader(), new Class[]{Connection.class},
-                    (proxy, method, args) -> method.getName().equals("close")
-                            ? pool.add((Connection) proxy)
-                            : method.invoke(connection, args));
-            pool.add(proxyConnection);
-            sourceConnections.add(connection);
-        }
+        pool = new ConnectionPool(
+                PropertiesUtil.get(URL_KEY),
+                PropertiesUtil.get(USERNAME_KEY),
+                PropertiesUtil.get(PASSWORD_KEY),
+                getInt(POOL_MIN_SIZE_KEY, DEFAULT_POOL_MIN_SIZE),
+                getInt(POOL_SIZE_KEY, DEFAULT_POOL_SIZE),
+                getLong(ACQUIRE_TIMEOUT_KEY, DEFAULT_ACQUIRE_TIMEOUT),
+                getLong(VALIDATE_IDLE_KEY, DEFAULT_VALIDATE_IDLE),
+                getLong(HOUSEKEEPING_KEY, DEFAULT_HOUSEKEEPING),
+                getLong(LEAK_THRESHOLD_KEY, DEFAULT_LEAK_THRESHOLD),
+                getInt(STATEMENT_CACHE_SIZE_KEY, DEFAULT_STATEMENT_CACHE_SIZE),
+                getInt(PREPARE_THRESHOLD_KEY, DEFAULT_PREPARE_THRESHOLD)
+        );
     }
 
     /**
@@ -62,28 +69,30 @@ public class ConnectionManager {
      */
     @SneakyThrows
     public static Connection get() {
-        return pool.take();
+        return pool.borrow();
     }
 
     /**
-     * Opens connection pool
+     * @return connection pool, e.g. to read its metrics
      */
-    @SneakyThrows
-    private static Connection open() {
-        return DriverManager.getConnection(
-                PropertiesUtil.get(URL_KEY),
-                PropertiesUtil.get(USERNAME_KEY),
-                PropertiesUtil.get(PASSWORD_KEY)
-        );
+    public static ConnectionPool getPool() {
+        return pool;
     }
 
     /**
      * Closes connection pool
      */
-    @SneakyThrows
     public static void closePool() {
-        for (Connection sourceConnection : sourceConnections) {
-            sourceConnection.close();
-        }
+        pool.close();
+    }
+
+    private static int getInt(String key, Integer defaultValue) {
+        String value = PropertiesUtil.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static long getLong(String key, Long defaultValue) {
+        String value = PropertiesUtil.get(key);
+        return value == null ? defaultValue : Long.parseLong(value);
     }
 }
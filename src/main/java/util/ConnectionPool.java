@@ -0,0 +1,286 @@
+package util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of JDBC connections with bounded size, acquire timeout, validation of idle connections,
+ * replacement of broken connections and leak detection
+ */
+public class ConnectionPool {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final long acquireTimeoutMillis;
+    private final long validateIdleNanos;
+    private final int validationTimeoutSeconds;
+    private final long leakThresholdNanos;
+    private final int statementCacheSize;
+    private final int prepareThreshold;
+
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> all = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LatencyHistogram acquireLatency = new LatencyHistogram();
+    private final Map<String, StatementStats> statementStats = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService housekeeper;
+
+    /**
+     * @param url                      database url
+     * @param user                     database user
+     * @param password                 database password
+     * @param minSize                  number of connections kept open even when idle
+     * @param maxSize                  maximum number of open connections
+     * @param acquireTimeoutMillis     how long borrow() waits for a free connection
+     * @param validateIdleMillis       connection idle longer than this is validated before lending
+     * @param housekeepingMillis       period of idle validation, refilling up to minSize and leak detection
+     * @param leakThresholdMillis      connection borrowed longer than this is reported as a leak, 0 disables detection
+     * @param statementCacheSize       number of prepared statements cached per connection, 0 disables caching
+     * @param prepareThreshold         executions after which cached statement is prepared on server side
+     */
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long acquireTimeoutMillis, long validateIdleMillis, long housekeepingMillis,
+                          long leakThresholdMillis, int statementCacheSize, int prepareThreshold) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = Math.min(minSize, maxSize);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.validateIdleNanos = TimeUnit.MILLISECONDS.toNanos(validateIdleMillis);
+        this.validationTimeoutSeconds = 5;
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+        this.statementCacheSize = statementCacheSize;
+        this.prepareThreshold = prepareThreshold;
+        this.permits = new Semaphore(maxSize, true);
+
+        for (int i = 0; i < this.minSize; i++) {
+            idle.add(open());
+        }
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, housekeepingMillis, housekeepingMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lends a connection. Idle connection is reused if it is still valid, otherwise a new one is opened
+     *
+     * @return connection which must be closed to be given back
+     * @throws SQLTimeoutException if no connection becomes free within acquire timeout
+     * @throws SQLException        if new connection can not be opened
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        waiters.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTimeoutException("Connection is not available, request timed out after "
+                                              + acquireTimeoutMillis + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for connection", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+
+        try {
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (System.nanoTime() - connection.getReturnedAt() < validateIdleNanos || isValid(connection)) break;
+                discard(connection);
+            }
+            if (connection == null) connection = open();
+
+            connection.borrow(leakThresholdNanos > 0);
+            active.incrementAndGet();
+            acquireLatency.record(System.nanoTime() - start);
+            return connection;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes connection back. Broken connection is closed, the next borrower will open a new one
+     *
+     * @param connection returned connection
+     */
+    void giveBack(PooledConnection connection) {
+        active.decrementAndGet();
+        try {
+            Connection physical = connection.getPhysicalConnection();
+            if (physical.isClosed()) {
+                discard(connection);
+            } else {
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                idle.addFirst(connection);
+            }
+        } catch (SQLException e) {
+            discard(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes all connections and stops housekeeping
+     */
+    public void close() {
+        housekeeper.shutdownNow();
+        all.forEach(this::closeQuietly);
+        all.clear();
+        idle.clear();
+    }
+
+    /**
+     * @return number of connections currently lent
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * @return number of open connections waiting in the pool
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * @return number of threads waiting for a free connection
+     */
+    public int getWaiters() {
+        return waiters.get();
+    }
+
+    /**
+     * @return number of borrow() calls that ended with timeout
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return number of broken connections replaced by new ones
+     */
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    /**
+     * @return histogram of time spent in borrow()
+     */
+    public LatencyHistogram getAcquireLatency() {
+        return acquireLatency;
+    }
+
+    /**
+     * @return statement cache counters by SQL text
+     */
+    public Map<String, StatementStats> getStatementStats() {
+        return statementStats;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool(active=" + getActive() + ", idle=" + getIdle() + ", waiters=" + getWaiters()
+               + ", timeouts=" + getTimeouts() + ", reconnects=" + getReconnects()
+               + ", acquireLatency=" + acquireLatency + ")";
+    }
+
+    /**
+     * Validates idle connections, opens new ones up to minSize and reports connections borrowed for too long
+     */
+    private void houseKeep() {
+        //connection is taken out of idle while it is validated, so get() can not lend it at the same time
+        for (PooledConnection connection : List.copyOf(idle)) {
+            if (!idle.remove(connection)) continue;
+            if (isValid(connection)) idle.addLast(connection);
+            else discard(connection);
+        }
+
+        try {
+            while (idle.size() + active.get() < minSize) {
+                idle.add(open());
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Connection pool can not reach minimum size: " + e.getMessage());
+        }
+
+        if (leakThresholdNanos <= 0) return;
+        long now = System.nanoTime();
+        for (PooledConnection connection : all) {
+            if (connection.isBorrowed() && !connection.isLeakReported()
+                && now - connection.getBorrowedAt() > leakThresholdNanos) {
+                connection.setLeakReported(true);
+                System.out.println("Connection leak detected: connection is borrowed for "
+                                   + TimeUnit.NANOSECONDS.toMillis(now - connection.getBorrowedAt()) + "ms");
+                if (connection.getBorrower() != null) connection.getBorrower().printStackTrace(System.out);
+            }
+        }
+    }
+
+    private boolean isValid(PooledConnection connection) {
+        try {
+            return connection.getPhysicalConnection().isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection open() {
+        try {
+            StatementCache statementCache = statementCacheSize > 0
+                    ? new StatementCache(statementCacheSize, prepareThreshold,
+                                         sql -> statementStats.computeIfAbsent(sql, key -> new StatementStats()))
+                    : null;
+            PooledConnection connection = new PooledConnection(
+                    DriverManager.getConnection(url, user, password), this, statementCache);
+            all.add(connection);
+            return connection;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void discard(PooledConnection connection) {
+        all.remove(connection);
+        closeQuietly(connection);
+        reconnects.increment();
+    }
+
+    private void closeQuietly(PooledConnection connection) {
+        try {
+            connection.getPhysicalConnection().close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
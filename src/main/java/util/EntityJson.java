@@ -0,0 +1,80 @@
+package util;
+
+import dao.OperationResult;
+import entity.Account;
+import entity.AppUser;
+import entity.Bank;
+import entity.Transaction;
+import lombok.experimental.UtilityClass;
+
+import java.time.format.DateTimeFormatter;
+
+/**
+ * JSON representation of entities. Locks and other internals are not written
+ */
+@UtilityClass
+public class EntityJson {
+    private final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    public static void writeAccount(JsonWriter json, Account account) {
+        json.beginObject()
+                .name("id").value(account.getId())
+                .name("currency").value(account.getCurrency() == null ? null : account.getCurrency().name())
+                .name("openingDate").value(account.getOpeningDate(), DATE_TIME_FORMATTER)
+                .name("balance").value(account.getBalance())
+                .name("bankId").value(account.getBankId())
+                .name("appUserId").value(account.getAppUserId())
+                .endObject();
+    }
+
+    public static void writeTransaction(JsonWriter json, Transaction transaction) {
+        json.beginObject()
+                .name("id").value(transaction.getId())
+                .name("date").value(transaction.getDate(), DATE_TIME_FORMATTER)
+                .name("type").value(transaction.getType() == null ? null : transaction.getType().name())
+                .name("receiverAccId").value(transaction.getReceiverAccId().orElse(null))
+                .name("senderAccId").value(transaction.getSenderAccId().orElse(null))
+                .name("total").value(transaction.getTotal())
+                .endObject();
+    }
+
+    public static void writeBank(JsonWriter json, Bank bank) {
+        json.beginObject()
+                .name("id").value(bank.getId())
+                .name("name").value(bank.getName())
+                .endObject();
+    }
+
+    public static void writeAppUser(JsonWriter json, AppUser appUser) {
+        json.beginObject()
+                .name("id").value(appUser.getId())
+                .name("fullName").value(appUser.getFullName())
+                .endObject();
+    }
+
+    /**
+     * Writes result of batch money operation: item, status OK with new balances by account id, or status FAILED with error
+     */
+    public static void writeOperationResult(JsonWriter json, OperationResult result) {
+        json.beginObject()
+                .name("item").value(result.item())
+                .name("status").value(result.isSucceeded() ? "OK" : "FAILED");
+        if (result.isSucceeded()) {
+            json.name("balances").beginObject();
+            result.balances().forEach((accId, balance) -> json.name(accId.toString()).value(balance));
+            json.endObject();
+        } else {
+            json.name("error").value(result.error());
+        }
+        json.endObject();
+    }
+
+    /**
+     * Writes {"error": message}
+     */
+    public static void writeError(JsonWriter json, String message) {
+        json.beginObject()
+                .name("error").value(message)
+                .endObject();
+    }
+}
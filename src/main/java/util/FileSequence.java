@@ -0,0 +1,78 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Persistent counter stored in a file. Numbers are reserved in blocks under an OS file lock,
+ * so several threads and several processes sharing the file never get the same number.
+ * Numbers of a block not used before shutdown are skipped
+ */
+public class FileSequence {
+    private final File file;
+    private final int blockSize;
+    private final LongSupplier initialValue;
+    private final Lock lock = new ReentrantLock();
+    private long next;
+    private long limit;
+
+    /**
+     * @param file         file keeping the next free number, created on first reservation
+     * @param blockSize    how many numbers one reservation takes
+     * @param initialValue first number if file does not exist yet
+     */
+    public FileSequence(File file, int blockSize, LongSupplier initialValue) {
+        this.file = file;
+        this.blockSize = blockSize;
+        this.initialValue = initialValue;
+    }
+
+    /**
+     * @return number which no other caller gets
+     */
+    public long next() {
+        lock.lock();
+        try {
+            if (next == limit) reserve();
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads next free number from file and writes it back increased by blockSize
+     */
+    private void reserve() {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.exists()) directory.mkdirs();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock fileLock = channel.lock();
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+                boolean exists = channel.read(buffer, 0) == Long.BYTES;
+                long start = exists ? buffer.flip().getLong() : initialValue.getAsLong();
+
+                buffer.clear().putLong(start + blockSize).flip();
+                channel.write(buffer, 0);
+                channel.force(false);
+
+                next = start;
+                limit = start + blockSize;
+            } finally {
+                fileLock.release();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Writes JSON token by token straight into a writer, so documents of any size are produced without building
+ * them in memory. Commas are placed automatically, nesting is limited to 64 levels
+ */
+public class JsonWriter implements AutoCloseable {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private final Writer writer;
+    //bit of each nesting level is set once the level has its first element
+    private long started;
+    private int depth;
+    private boolean afterName;
+
+    /**
+     * @param writer writer receiving JSON text, closed with this JsonWriter
+     */
+    public JsonWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public JsonWriter beginObject() {
+        separate();
+        return open('{');
+    }
+
+    public JsonWriter endObject() {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() {
+        separate();
+        return open('[');
+    }
+
+    public JsonWriter endArray() {
+        return close(']');
+    }
+
+    /**
+     * Writes member name, must be followed by a value
+     *
+     * @param name member name
+     */
+    public JsonWriter name(String name) {
+        separate();
+        string(name);
+        write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        if (value == null) return nullValue();
+        separate();
+        string(value);
+        return this;
+    }
+
+    public JsonWriter value(Number value) {
+        if (value == null) return nullValue();
+        separate();
+        write(value.toString());
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        separate();
+        write(Long.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes date-time as JSON string formatted without intermediate String
+     *
+     * @param value     date-time, may be null
+     * @param formatter format of date-time
+     */
+    public JsonWriter value(TemporalAccessor value, DateTimeFormatter formatter) {
+        if (value == null) return nullValue();
+        separate();
+        write('"');
+        formatter.formatTo(value, writer);
+        write('"');
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        separate();
+        write("null");
+        return this;
+    }
+
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private JsonWriter open(char bracket) {
+        write(bracket);
+        depth++;
+        started &= ~(1L << depth);
+        return this;
+    }
+
+    private JsonWriter close(char bracket) {
+        depth--;
+        write(bracket);
+        return this;
+    }
+
+    /**
+     * Writes comma before every element but the first one of current object or array
+     */
+    private void separate() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth == 0) return;
+        long bit = 1L << depth;
+        if ((started & bit) != 0) write(',');
+        else started |= bit;
+    }
+
+    /**
+     * Writes escaped string, runs of characters which need no escaping are written at once
+     */
+    private void string(String value) {
+        write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') continue;
+
+            write(value, start, i - start);
+            switch (c) {
+                case '"' -> write("\\\"");
+                case '\\' -> write("\\\\");
+                case '\n' -> write("\\n");
+                case '\r' -> write("\\r");
+                case '\t' -> write("\\t");
+                default -> {
+                    write("\\u00");
+                    write(HEX[c >> 4]);
+                    write(HEX[c & 0xF]);
+                }
+            }
+            start = i + 1;
+        }
+        write(value, start, value.length() - start);
+        write('"');
+    }
+
+    private void write(String value) {
+        write(value, 0, value.length());
+    }
+
+    private void write(String value, int offset, int length) {
+        try {
+            writer.write(value, offset, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void write(char c) {
+        try {
+            writer.write(c);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
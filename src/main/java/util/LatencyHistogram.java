@@ -0,0 +1,72 @@
+package util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts latencies into fixed buckets: up to 0.1ms, 0.5ms, 1ms, 5ms, 10ms, 50ms, 100ms, 500ms, 1s and slower
+ */
+public class LatencyHistogram {
+    private static final long[] BOUNDS_MICROS = {100, 500, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000};
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_MICROS.length + 1];
+    private final LongAdder totalMicros = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos measured latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        totalMicros.add(micros);
+
+        int i = 0;
+        while (i < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[i]) i++;
+        buckets[i].increment();
+    }
+
+    /**
+     * @return number of recorded latencies
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return mean latency in milliseconds
+     */
+    public double getMeanMillis() {
+        long count = getCount();
+        return count == 0 ? 0 : totalMicros.sum() / 1000d / count;
+    }
+
+    /**
+     * @return counts per bucket, the last one counts latencies slower than 1s
+     */
+    public long[] getBuckets() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("LatencyHistogram(");
+        long[] counts = getBuckets();
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            builder.append("<=").append(BOUNDS_MICROS[i] / 1000d).append("ms=").append(counts[i]).append(", ");
+        }
+        return builder.append(">1s=").append(counts[BOUNDS_MICROS.length])
+                .append(", mean=").append("%.3f".formatted(getMeanMillis())).append("ms)").toString();
+    }
+}
@@ -0,0 +1,41 @@
+package util;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes printed files into streams through memory mappings, so file content is not copied to heap
+ */
+@UtilityClass
+public class MappedFileReader {
+    private final long MAX_MAPPING = Integer.MAX_VALUE;
+
+    /**
+     * Maps file region by region and writes it into stream. Stream is not closed
+     *
+     * @param file file to be written
+     * @param out  stream receiving file content, e.g. servlet response
+     * @throws IOException if file can not be read or stream fails
+     */
+    public static void writeTo(File file, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAX_MAPPING) {
+                MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAX_MAPPING, size - position));
+                while (mapping.hasRemaining()) {
+                    target.write(mapping);
+                }
+            }
+        }
+    }
+}
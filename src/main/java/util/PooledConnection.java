@@ -0,0 +1,102 @@
+package util;
+
+import lombok.experimental.Delegate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Connection lent by ConnectionPool. All calls go straight to the physical connection,
+ * except close() which gives the connection back to the pool and prepareStatement(String)
+ * which reuses statements prepared earlier on the same connection
+ */
+public class PooledConnection implements Connection {
+    @Delegate(types = Connection.class, excludes = PoolManagedMethods.class)
+    private final Connection connection;
+    private final ConnectionPool pool;
+    private final StatementCache statementCache;
+    private volatile boolean borrowed;
+    private volatile long borrowedAt;
+    private volatile long returnedAt = System.nanoTime();
+    private volatile Throwable borrower;
+    private volatile boolean leakReported;
+
+    PooledConnection(Connection connection, ConnectionPool pool, StatementCache statementCache) {
+        this.connection = connection;
+        this.pool = pool;
+        this.statementCache = statementCache;
+    }
+
+    /**
+     * Gives statement cached for this SQL text or prepares a new one.
+     * Closing the statement keeps it open for the next call with the same SQL
+     */
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        if (statementCache == null) return connection.prepareStatement(sql);
+        return statementCache.prepare(connection, this, sql);
+    }
+
+    /**
+     * Gives connection back to the pool instead of closing it. Repeated calls are ignored
+     */
+    @Override
+    public void close() throws SQLException {
+        if (!borrowed) return;
+        borrowed = false;
+        returnedAt = System.nanoTime();
+        pool.giveBack(this);
+    }
+
+    /**
+     * @return true if connection was given back to the pool or physical connection is closed
+     */
+    @Override
+    public boolean isClosed() throws SQLException {
+        return !borrowed || connection.isClosed();
+    }
+
+    void borrow(boolean captureStack) {
+        borrowed = true;
+        borrowedAt = System.nanoTime();
+        borrower = captureStack ? new Throwable("Connection borrowed here") : null;
+        leakReported = false;
+    }
+
+    Connection getPhysicalConnection() {
+        return connection;
+    }
+
+    boolean isBorrowed() {
+        return borrowed;
+    }
+
+    long getBorrowedAt() {
+        return borrowedAt;
+    }
+
+    long getReturnedAt() {
+        return returnedAt;
+    }
+
+    Throwable getBorrower() {
+        return borrower;
+    }
+
+    boolean isLeakReported() {
+        return leakReported;
+    }
+
+    void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+
+    private interface PoolManagedMethods {
+        void close() throws SQLException;
+
+        boolean isClosed() throws SQLException;
+
+        PreparedStatement prepareStatement(String sql) throws SQLException;
+    }
+}
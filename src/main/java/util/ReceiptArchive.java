@@ -0,0 +1,357 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only store of receipts. Receipts are appended to segment files which are rotated by size,
+ * every segment has an index file of (receipt number, offset, sender account, receiver account) entries.
+ * Receipts are read through memory mappings, so a receipt is served without copying it to heap and without
+ * taking the writer lock. Full segments are mapped whole and only the most recently used of them stay mapped;
+ * the segment being written is mapped up to its committed length and remapped only when a receipt past
+ * the mapped part is requested.
+ * Segment record: receipt number (8 bytes), text length (4 bytes), UTF-8 text.
+ * Directory must be used by one process at a time
+ */
+public class ReceiptArchive {
+    private static final int RECORD_HEADER = Long.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY = Long.BYTES * 2 + Integer.BYTES * 2;
+    private final File directory;
+    private final long segmentSize;
+    private final int fsyncEvery;
+    private final Lock lock = new ReentrantLock();
+    private final ConcurrentNavigableMap<Long, Position> index = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<Integer, NavigableSet<Long>> accountIndex = new ConcurrentSkipListMap<>();
+    private final Map<Integer, MappedByteBuffer> mappings;
+    private final AtomicReference<Tail> tail = new AtomicReference<>(new Tail(-1, 0, null));
+    private int segmentNo;
+    private FileChannel segment;
+    private FileChannel segmentIndex;
+    private int unsynced;
+
+    /**
+     * Opens archive, loads indexes of all segments and cuts unfinished record at the end of the last one
+     *
+     * @param directory   directory of segment and index files
+     * @param segmentSize size in bytes after which new segment is started
+     * @param fsyncEvery  number of appended receipts after which files are forced to disk, 0 leaves it to sync()
+     * @param mapped      how many full segments stay mapped, least recently read are unmapped by garbage collector
+     */
+    public ReceiptArchive(File directory, long segmentSize, int fsyncEvery, int mapped) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncEvery = fsyncEvery;
+        this.mappings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, MappedByteBuffer> eldest) {
+                return size() > mapped;
+            }
+        };
+        if (!directory.exists()) directory.mkdirs();
+
+        try {
+            int[] segments = findSegments();
+            for (int no : segments) {
+                loadIndex(no);
+            }
+            openSegment(segments.length == 0 ? 0 : segments[segments.length - 1]);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Appends receipt to current segment, starting a new segment if the current one is full
+     *
+     * @param receiptNo     receipt number
+     * @param senderAccId   id of senders account, null if there is no sender
+     * @param receiverAccId id of receivers account, null if there is no receiver
+     * @param receipt       receipt text
+     */
+    public void append(long receiptNo, Integer senderAccId, Integer receiverAccId, String receipt) {
+        byte[] text = receipt.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + text.length)
+                .putLong(receiptNo).putInt(text.length).put(text).flip();
+        int sender = senderAccId == null ? 0 : senderAccId;
+        int receiver = receiverAccId == null ? 0 : receiverAccId;
+
+        lock.lock();
+        try {
+            if (segment.size() > 0 && segment.size() + record.remaining() > segmentSize) rotate();
+
+            long offset = segment.size();
+            while (record.hasRemaining()) {
+                segment.write(record, offset + record.position());
+            }
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY)
+                    .putLong(receiptNo).putLong(offset).putInt(sender).putInt(receiver).flip();
+            segmentIndex.write(entry, segmentIndex.size());
+            //readers find the receipt through index only after its bytes are committed
+            long committed = offset + RECORD_HEADER + text.length;
+            tail.updateAndGet(current -> new Tail(segmentNo, committed,
+                    current.segment() == segmentNo ? current.mapping() : null));
+            index(receiptNo, new Position(segmentNo, offset), sender, receiver);
+
+            unsynced++;
+            if (fsyncEvery > 0 && unsynced >= fsyncEvery) force();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds receipt by number
+     *
+     * @param receiptNo receipt number
+     * @return receipt text, Optional.empty if receipt is not in archive
+     */
+    public Optional<String> read(long receiptNo) {
+        return slice(receiptNo).map(text -> StandardCharsets.UTF_8.decode(text).toString());
+    }
+
+    /**
+     * Writes receipt into channel straight from mapped segment
+     *
+     * @param receiptNo receipt number
+     * @param out       channel receiving UTF-8 receipt text, e.g. wrapping servlet response
+     * @return false if receipt is not in archive
+     * @throws IOException if channel fails
+     */
+    public boolean writeTo(long receiptNo, WritableByteChannel out) throws IOException {
+        Optional<ByteBuffer> text = slice(receiptNo);
+        if (text.isEmpty()) return false;
+
+        ByteBuffer buffer = text.get();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        return true;
+    }
+
+    /**
+     * @param accId id of account
+     * @return numbers of receipts where account is sender or receiver, ascending
+     */
+    public List<Long> findByAccount(Integer accId) {
+        NavigableSet<Long> receipts = accountIndex.get(accId);
+        return receipts == null ? List.of() : List.copyOf(receipts);
+    }
+
+    /**
+     * Forces all appended receipts to disk
+     */
+    public void sync() {
+        lock.lock();
+        try {
+            force();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces appended receipts to disk and closes files
+     */
+    public void close() {
+        lock.lock();
+        try {
+            force();
+            segment.close();
+            segmentIndex.close();
+            synchronized (mappings) {
+                mappings.clear();
+            }
+            tail.set(new Tail(-1, 0, null));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of receipts in archive
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Gives read-only view of receipt text in mapped segment
+     */
+    private Optional<ByteBuffer> slice(long receiptNo) {
+        Position position = index.get(receiptNo);
+        if (position == null) return Optional.empty();
+
+        int offset = (int) position.offset();
+        MappedByteBuffer mapping = mapping(position);
+        int length = mapping.getInt(offset + Long.BYTES);
+        return Optional.of(mapping.slice(offset + RECORD_HEADER, length).asReadOnlyBuffer());
+    }
+
+    /**
+     * Gives mapping which contains the whole record. Segment being written is mapped up to committed length
+     * and remapped when the record lies past the mapped part; other segments are mapped whole once
+     * and kept while they are among the most recently read
+     */
+    private MappedByteBuffer mapping(Position position) {
+        Tail current = tail.get();
+        if (current.segment() == position.segment()) {
+            MappedByteBuffer mapping = current.mapping();
+            if (mapping != null && contains(mapping, position.offset())) return mapping;
+
+            MappedByteBuffer remapped = map(position.segment(), current.committed());
+            tail.updateAndGet(latest -> latest.segment() == position.segment()
+                    && (latest.mapping() == null || latest.mapping().capacity() < remapped.capacity())
+                    ? new Tail(latest.segment(), latest.committed(), remapped) : latest);
+            return remapped;
+        }
+
+        MappedByteBuffer mapping;
+        synchronized (mappings) {
+            mapping = mappings.get(position.segment());
+        }
+        if (mapping != null) return mapping;
+        mapping = map(position.segment(), segmentFile(position.segment()).length());
+        synchronized (mappings) {
+            mappings.put(position.segment(), mapping);
+        }
+        return mapping;
+    }
+
+    private boolean contains(MappedByteBuffer mapping, long offset) {
+        return offset + RECORD_HEADER <= mapping.capacity()
+                && offset + RECORD_HEADER + mapping.getInt((int) offset + Long.BYTES) <= mapping.capacity();
+    }
+
+    private MappedByteBuffer map(int no, long length) {
+        try (FileChannel channel = FileChannel.open(segmentFile(no).toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void index(long receiptNo, Position position, int sender, int receiver) {
+        index.put(receiptNo, position);
+        if (sender != 0) accountIndex.computeIfAbsent(sender, id -> new ConcurrentSkipListSet<>()).add(receiptNo);
+        if (receiver != 0) accountIndex.computeIfAbsent(receiver, id -> new ConcurrentSkipListSet<>()).add(receiptNo);
+    }
+
+    private void force() throws IOException {
+        if (unsynced == 0) return;
+        segment.force(false);
+        segmentIndex.force(false);
+        unsynced = 0;
+    }
+
+    private void rotate() throws IOException {
+        force();
+        segment.close();
+        segmentIndex.close();
+        openSegment(segmentNo + 1);
+    }
+
+    private void openSegment(int no) throws IOException {
+        segmentNo = no;
+        segment = FileChannel.open(segmentFile(no).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentIndex = FileChannel.open(indexFile(no).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        //drop what a crash left after the last indexed record
+        Position last = index.values().stream()
+                .filter(position -> position.segment() == no)
+                .max(Comparator.comparingLong(Position::offset))
+                .orElse(null);
+        long end = 0;
+        if (last != null) {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            readFully(segment, header, last.offset());
+            end = last.offset() + RECORD_HEADER + header.flip().getInt(Long.BYTES);
+        }
+        segment.truncate(end);
+        segmentIndex.truncate(index.values().stream().filter(position -> position.segment() == no).count() * INDEX_ENTRY);
+        tail.set(new Tail(no, end, null));
+    }
+
+    /**
+     * Loads index of segment, skipping entries which point past the end of segment file
+     */
+    private void loadIndex(int no) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile(no).toPath(), StandardOpenOption.READ);
+             FileChannel log = FileChannel.open(segmentFile(no).toPath(), StandardOpenOption.READ)) {
+            long logSize = log.size();
+            ByteBuffer entries = ByteBuffer.allocate((int) (channel.size() / INDEX_ENTRY * INDEX_ENTRY));
+            readFully(channel, entries, 0);
+            entries.flip();
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            while (entries.remaining() >= INDEX_ENTRY) {
+                long receiptNo = entries.getLong();
+                long offset = entries.getLong();
+                int sender = entries.getInt();
+                int receiver = entries.getInt();
+                if (offset + RECORD_HEADER > logSize) break;
+                readFully(log, header.clear(), offset);
+                if (offset + RECORD_HEADER + header.flip().getInt(Long.BYTES) > logSize) break;
+                index(receiptNo, new Position(no, offset), sender, receiver);
+            }
+        }
+    }
+
+    private int[] findSegments() {
+        String[] names = directory.list((dir, name) -> name.startsWith("segment") && name.endsWith(".log"));
+        if (names == null) return new int[0];
+        return Arrays.stream(names)
+                .mapToInt(name -> Integer.parseInt(name.substring("segment".length(), name.length() - ".log".length())))
+                .filter(no -> indexFile(no).exists())
+                .sorted()
+                .toArray();
+    }
+
+    private void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of file");
+        }
+    }
+
+    private File segmentFile(int no) {
+        return new File(directory, "segment" + no + ".log");
+    }
+
+    private File indexFile(int no) {
+        return new File(directory, "segment" + no + ".idx");
+    }
+
+    private record Position(int segment, long offset) {
+    }
+
+    /**
+     * Segment being written, length of its records visible to readers and its mapping, null if not mapped yet
+     */
+    private record Tail(int segment, long committed, MappedByteBuffer mapping) {
+    }
+}
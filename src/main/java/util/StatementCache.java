@@ -0,0 +1,77 @@
+package util;
+
+import org.postgresql.PGStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * LRU cache of prepared statements of one pooled connection, keyed by SQL text.
+ * Used only by the thread that borrowed the connection, so it needs no locking
+ */
+class StatementCache {
+    private final Map<String, CachedPreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxSize;
+    private final int prepareThreshold;
+    private final Function<String, StatementStats> statsBySql;
+
+    /**
+     * @param maxSize          maximum number of statements kept open
+     * @param prepareThreshold executions after which PostgreSQL driver switches statement to server-side prepare
+     * @param statsBySql       counters shared by caches of all connections
+     */
+    StatementCache(int maxSize, int prepareThreshold, Function<String, StatementStats> statsBySql) {
+        this.maxSize = maxSize;
+        this.prepareThreshold = prepareThreshold;
+        this.statsBySql = statsBySql;
+    }
+
+    /**
+     * Gives cached statement for SQL text or prepares a new one. If cached statement is still open
+     * by the same caller, a plain statement is returned instead
+     *
+     * @param physical   connection statements are prepared on
+     * @param connection pooled connection returned by statement's getConnection()
+     * @param sql        SQL text
+     * @return statement which must be closed to be reused
+     */
+    PreparedStatement prepare(Connection physical, Connection connection, String sql) throws SQLException {
+        StatementStats stats = statsBySql.apply(sql);
+        CachedPreparedStatement cached = statements.get(sql);
+        if (cached != null && !cached.isClosedPhysically()) {
+            if (cached.isInUse()) {
+                stats.miss();
+                return physical.prepareStatement(sql);
+            }
+            stats.hit();
+            cached.setInUse(true);
+            return cached;
+        }
+
+        stats.miss();
+        PreparedStatement statement = physical.prepareStatement(sql);
+        if (statement.isWrapperFor(PGStatement.class)) {
+            statement.unwrap(PGStatement.class).setPrepareThreshold(prepareThreshold);
+        }
+        cached = new CachedPreparedStatement(statement, connection);
+        cached.setInUse(true);
+        statements.put(sql, cached);
+        evictEldest();
+        return cached;
+    }
+
+    private void evictEldest() throws SQLException {
+        Iterator<Map.Entry<String, CachedPreparedStatement>> iterator = statements.entrySet().iterator();
+        while (statements.size() > maxSize) {
+            Map.Entry<String, CachedPreparedStatement> eldest = iterator.next();
+            iterator.remove();
+            statsBySql.apply(eldest.getKey()).evict();
+            eldest.getValue().evict();
+        }
+    }
+}
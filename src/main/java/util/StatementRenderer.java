@@ -0,0 +1,78 @@
+package util;
+
+import com.lowagie.text.Chunk;
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Font;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PdfWriter;
+import lombok.experimental.UtilityClass;
+
+import java.awt.Color;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Renders text statements into PDF. Font is created once, each document only lays out text
+ */
+@UtilityClass
+public class StatementRenderer {
+    private final Font FONT = new Font(Font.COURIER, 10, Font.getFontStyleFromName(BaseFont.CP1250), Color.BLACK);
+
+    /**
+     * Renders one statement as PDF document. Stream is not closed
+     *
+     * @param statement text of statement
+     * @param out       stream receiving PDF document
+     */
+    public static void render(String statement, OutputStream out) {
+        Document doc = new Document();
+        PdfWriter writer = open(doc, out);
+        addStatement(doc, statement);
+        doc.close();
+        writer.close();
+    }
+
+    /**
+     * Renders many statements into one PDF document, each statement on its own page,
+     * so the whole batch shares one writer, one font and one set of document resources. Stream is not closed
+     *
+     * @param statements texts of statements, produced one by one while rendering
+     * @param out        stream receiving PDF document
+     * @return number of rendered statements
+     */
+    public static int renderAll(Iterator<String> statements, OutputStream out) {
+        Document doc = new Document();
+        PdfWriter writer = open(doc, out);
+        int count = 0;
+        while (statements.hasNext()) {
+            if (count++ > 0) doc.newPage();
+            addStatement(doc, statements.next());
+        }
+        if (count == 0) addStatement(doc, "");
+        doc.close();
+        writer.close();
+        return count;
+    }
+
+    private PdfWriter open(Document doc, OutputStream out) {
+        try {
+            PdfWriter writer = PdfWriter.getInstance(doc, out);
+            writer.setCloseStream(false);
+            doc.open();
+            return writer;
+        } catch (DocumentException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void addStatement(Document doc, String statement) {
+        try {
+            doc.add(new Paragraph(""));
+            doc.add(new Chunk(statement, FONT));
+        } catch (DocumentException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
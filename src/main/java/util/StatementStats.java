@@ -0,0 +1,60 @@
+package util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statement cache counters of one SQL text, summed over all pooled connections
+ */
+public class StatementStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    void evict() {
+        evictions.increment();
+    }
+
+    /**
+     * @return number of prepareStatement calls served by an already prepared statement
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of prepareStatement calls that prepared a new statement
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of statements removed from cache to make room for others
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return share of prepareStatement calls served from cache, 0 if there were none
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementStats(hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+               + ", hitRatio=" + String.format("%.2f", getHitRatio()) + ")";
+    }
+}
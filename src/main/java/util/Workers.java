@@ -0,0 +1,200 @@
+package util;
+
+import lombok.experimental.UtilityClass;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors of blocking tasks (JDBC, file writes). With property execution.mode=virtual and a JDK
+ * that has virtual threads, every task gets its own virtual thread: an executor runs as many of its tasks
+ * at once as it would have platform threads, and at most execution.virtual.parallelism tasks of all executors
+ * run at once. Otherwise tasks run on a bounded pool of platform threads.
+ * Both kinds make the submitting thread wait when they are full, so callers never queue unbounded work
+ */
+@UtilityClass
+public class Workers {
+    private final String MODE_KEY = "execution.mode";
+    private final String VIRTUAL_PARALLELISM_KEY = "execution.virtual.parallelism";
+    private final Integer DEFAULT_VIRTUAL_PARALLELISM = 100;
+    //Thread.ofVirtual() is looked up reflectively, the code base still compiles for JDK 17
+    private final Method VIRTUAL_FACTORY = findVirtualFactory();
+    private final boolean VIRTUAL = "virtual".equals(PropertiesUtil.get(MODE_KEY)) && VIRTUAL_FACTORY != null;
+    private final int VIRTUAL_PARALLELISM = readVirtualParallelism();
+    //shared by all executors of create(), their tasks are leaves and never wait for each other
+    private final Semaphore VIRTUAL_PERMITS = new Semaphore(VIRTUAL_PARALLELISM);
+
+    /**
+     * @return true if tasks run on virtual threads
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL;
+    }
+
+    /**
+     * @return maximal number of tasks of all executors running at once on virtual threads
+     */
+    public static int getVirtualParallelism() {
+        return VIRTUAL_PARALLELISM;
+    }
+
+    /**
+     * Creates executor for one job, e.g. batch of money operations
+     *
+     * @param name    prefix of thread names
+     * @param threads number of platform threads, or of running virtual threads of this job if they are on
+     * @return executor which must be shut down by caller
+     */
+    public static ExecutorService create(String name, int threads) {
+        if (VIRTUAL) return new VirtualExecutor(virtualFactory(name), threads, VIRTUAL_PERMITS);
+
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2), platformFactory(name),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Creates long-lived pool of platform threads for CPU bound work, e.g. rendering documents.
+     * Unlike {@link #create(String, int)} it never makes the submitting thread wait or run the task:
+     * tasks beyond the queue are rejected, so callers can turn clients away
+     *
+     * @param name      prefix of thread names
+     * @param threads   number of threads
+     * @param queueSize maximal number of waiting tasks
+     * @return executor throwing {@link java.util.concurrent.RejectedExecutionException} when queue is full
+     */
+    public static ThreadPoolExecutor createRejecting(String name, int threads, int queueSize) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), platformFactory(name),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Creates executor running every task on a new virtual thread, bounded by its own parallelism only,
+     * e.g. for requests which may submit tasks to executors of {@link #create(String, int)}
+     *
+     * @param name        prefix of thread names
+     * @param parallelism maximal number of running tasks
+     * @return executor which must be shut down by caller
+     * @throws UnsupportedOperationException if JDK has no virtual threads
+     */
+    public static ExecutorService createVirtual(String name, int parallelism) {
+        if (VIRTUAL_FACTORY == null) throw new UnsupportedOperationException("Virtual threads need JDK 21 or newer");
+        return new VirtualExecutor(virtualFactory(name), parallelism, null);
+    }
+
+    private int readVirtualParallelism() {
+        String parallelism = PropertiesUtil.get(VIRTUAL_PARALLELISM_KEY);
+        return parallelism == null ? DEFAULT_VIRTUAL_PARALLELISM : Integer.parseInt(parallelism);
+    }
+
+    private Method findVirtualFactory() {
+        try {
+            return Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private ThreadFactory platformFactory(String name) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private ThreadFactory virtualFactory(String name) {
+        try {
+            Object builder = VIRTUAL_FACTORY.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Starts a virtual thread per task. Own semaphore bounds running tasks of executor, shared one, if any,
+     * bounds tasks of all executors; execute() waits for a free permit of both
+     */
+    private static class VirtualExecutor extends AbstractExecutorService {
+        private final ThreadFactory factory;
+        private final Semaphore permits;
+        private final Semaphore shared;
+        private final int parallelism;
+        private volatile boolean shutdown;
+
+        private VirtualExecutor(ThreadFactory factory, int parallelism, Semaphore shared) {
+            this.factory = factory;
+            this.parallelism = parallelism;
+            this.permits = new Semaphore(parallelism);
+            this.shared = shared;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) throw new IllegalStateException("Executor is shut down");
+            permits.acquireUninterruptibly();
+            if (shared != null) shared.acquireUninterruptibly();
+            try {
+                factory.newThread(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        release();
+                    }
+                }).start();
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
+
+        private void release() {
+            if (shared != null) shared.release();
+            permits.release();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && permits.availablePermits() == parallelism;
+        }
+
+        /**
+         * Waits until all started tasks are finished
+         */
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            if (!permits.tryAcquire(parallelism, timeout, unit)) return false;
+            permits.release(parallelism);
+            return true;
+        }
+    }
+}
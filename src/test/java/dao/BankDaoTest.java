@@ -0,0 +1,65 @@
+package dao;
+
+import entity.Account;
+import exception.InsufficientFundsException;
+import exception.NoSuchAccountFoundException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.TestDatabase;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BankDaoTest {
+    private static final String BALANCE_SQL = "SELECT balance FROM account WHERE id = ?";
+    private static final String TRANSFERS_SQL = "SELECT count(*) FROM transaction WHERE senderaccid = ?";
+
+    @BeforeAll
+    static void initDatabase() {
+        assumeTrue(TestDatabase.init());
+    }
+
+    @Test
+    void transferMovesMoneyAndSavesTransaction() throws Exception {
+        Account sender = TestDatabase.createAccount(100);
+        Account receiver = TestDatabase.createAccount(0);
+
+        Map<String, Double> balance = BankDao.getInstance().transfer(sender.getId(), receiver.getId(), 30d);
+
+        assertEquals(70d, balance.get("senderBalance"));
+        assertEquals(30d, balance.get("receiverBalance"));
+        assertEquals(70d, TestDatabase.query(BALANCE_SQL, Double.class, sender.getId()));
+        assertEquals(30d, TestDatabase.query(BALANCE_SQL, Double.class, receiver.getId()));
+        assertEquals(1L, TestDatabase.query(TRANSFERS_SQL, Long.class, sender.getId()));
+    }
+
+    @Test
+    void transferWithInsufficientFundsChangesNothing() {
+        Account sender = TestDatabase.createAccount(10);
+        Account receiver = TestDatabase.createAccount(0);
+
+        assertThrows(InsufficientFundsException.class,
+                () -> BankDao.getInstance().transfer(sender.getId(), receiver.getId(), 30d));
+
+        assertEquals(10d, TestDatabase.query(BALANCE_SQL, Double.class, sender.getId()));
+        assertEquals(0d, TestDatabase.query(BALANCE_SQL, Double.class, receiver.getId()));
+        assertEquals(0L, TestDatabase.query(TRANSFERS_SQL, Long.class, sender.getId()));
+    }
+
+    @Test
+    void transferToReceiverDeletedAfterLookupDoesNotDebitSender() {
+        Account sender = TestDatabase.createAccount(100);
+        Account receiver = TestDatabase.createAccount(0);
+        //row disappears behind the cache, as if deleted after accountDao.getById
+        TestDatabase.update("DELETE FROM account WHERE id = ?", receiver.getId());
+
+        assertThrows(NoSuchAccountFoundException.class,
+                () -> BankDao.getInstance().transfer(sender.getId(), receiver.getId(), 30d));
+
+        assertEquals(100d, TestDatabase.query(BALANCE_SQL, Double.class, sender.getId()));
+        assertEquals(0L, TestDatabase.query(TRANSFERS_SQL, Long.class, sender.getId()));
+    }
+}
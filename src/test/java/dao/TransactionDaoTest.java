@@ -0,0 +1,109 @@
+package dao;
+
+import entity.Transaction;
+import entity.TransactionType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.TestDatabase;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TransactionDaoTest {
+    private static final LocalDateTime FIRST_DAY = LocalDateTime.of(2001, 1, 1, 10, 0);
+    private static final LocalDateTime SECOND_DAY = LocalDateTime.of(2001, 1, 2, 10, 0);
+    private static final LocalDateTime THIRD_DAY = LocalDateTime.of(2001, 1, 3, 0, 0);
+    private static TransactionDao transactionDao;
+    private static Integer accId;
+    private static Transaction transfer;
+    private static Transaction refill;
+    private static Transaction secondRefill;
+    private static Transaction incoming;
+    private static Transaction withdraw;
+
+    @BeforeAll
+    static void initDatabase() {
+        assumeTrue(TestDatabase.init());
+        transactionDao = TransactionDao.getInstance();
+        accId = TestDatabase.createAccount(0).getId();
+        Integer otherAccId = TestDatabase.createAccount(0).getId();
+
+        //transactions of one date are ordered by id
+        transfer = save(FIRST_DAY, TransactionType.TRANSFER, otherAccId, accId, 10d);
+        refill = save(FIRST_DAY, TransactionType.REFILL, accId, null, 20d);
+        secondRefill = save(SECOND_DAY, TransactionType.REFILL, accId, null, 30d);
+        incoming = save(THIRD_DAY, TransactionType.TRANSFER, accId, otherAccId, 40d);
+        withdraw = save(THIRD_DAY, TransactionType.WITHDRAW, null, accId, 50d);
+    }
+
+    @Test
+    void accountPagesContinueAfterLastDateAndIdWithoutGapsOrRepeats() {
+        TransactionFilter filter = new TransactionFilter(accId, null, null, null, null, null);
+
+        List<Transaction> first = transactionDao.findPage(filter, null, 0, 2);
+        assertEquals(ids(transfer, refill), ids(first));
+        List<Transaction> second = transactionDao.findPage(filter, refill.getDate(), refill.getId(), 2);
+        assertEquals(ids(secondRefill, incoming), ids(second));
+        List<Transaction> third = transactionDao.findPage(filter, incoming.getDate(), incoming.getId(), 2);
+        assertEquals(ids(withdraw), ids(third));
+        assertEquals(List.of(), transactionDao.findPage(filter, withdraw.getDate(), withdraw.getId(), 2));
+    }
+
+    @Test
+    void pageStartsInsideGroupOfEqualDates() {
+        TransactionFilter filter = new TransactionFilter(accId, null, null, null, null, null);
+
+        assertEquals(ids(refill, secondRefill), ids(transactionDao.findPage(filter, transfer.getDate(), transfer.getId(), 2)));
+        assertEquals(ids(withdraw), ids(transactionDao.findPage(filter, incoming.getDate(), incoming.getId(), 1)));
+    }
+
+    @Test
+    void cursorWithoutDateTakesDateOfAfterId() {
+        TransactionFilter filter = new TransactionFilter(accId, null, null, null, null, null);
+
+        assertEquals(ids(secondRefill, incoming), ids(transactionDao.findPage(filter, null, refill.getId(), 2)));
+    }
+
+    @Test
+    void typeAndTotalAreCheckedBeforePageIsCut() {
+        TransactionFilter refills = new TransactionFilter(accId, TransactionType.REFILL, null, null, null, null);
+        assertEquals(ids(refill), ids(transactionDao.findPage(refills, null, 0, 1)));
+        assertEquals(ids(secondRefill), ids(transactionDao.findPage(refills, refill.getDate(), refill.getId(), 1)));
+
+        TransactionFilter large = new TransactionFilter(accId, null, null, null, 30d, 40d);
+        assertEquals(ids(secondRefill, incoming), ids(transactionDao.findPage(large, null, 0, 10)));
+    }
+
+    @Test
+    void periodIncludesBothEnds() {
+        TransactionFilter period = new TransactionFilter(null, null, FIRST_DAY, THIRD_DAY, null, null);
+
+        assertEquals(ids(transfer, refill, secondRefill, incoming, withdraw), ids(transactionDao.findPage(period, null, 0, 10)));
+        assertEquals(ids(incoming, withdraw), ids(transactionDao.findPage(period, secondRefill.getDate(), secondRefill.getId(), 10)));
+    }
+
+    @Test
+    void unfilteredPagesAreOrderedByDateToo() {
+        TransactionFilter all = new TransactionFilter(null, null, null, null, null, null);
+
+        assertEquals(ids(incoming, withdraw), ids(transactionDao.findPage(all, secondRefill.getDate(), secondRefill.getId(), 2)));
+    }
+
+    private static Transaction save(LocalDateTime date, TransactionType type, Integer receiverAccId, Integer senderAccId,
+                                    Double total) {
+        return transactionDao.save(new Transaction(null, date, type, Optional.ofNullable(receiverAccId),
+                Optional.ofNullable(senderAccId), total));
+    }
+
+    private static List<Integer> ids(Transaction... transactions) {
+        return ids(List.of(transactions));
+    }
+
+    private static List<Integer> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).toList();
+    }
+}
@@ -0,0 +1,111 @@
+package service;
+
+import dao.MoneyOperation;
+import dao.OperationResult;
+import entity.TransactionType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import util.TestDatabase;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MoneyOperationServiceTest {
+    private static final String BALANCE_SQL = "SELECT balance FROM account WHERE id = ?";
+    private static MoneyOperationService moneyOperationService;
+
+    @BeforeAll
+    static void initDatabase() {
+        assumeTrue(TestDatabase.init());
+        moneyOperationService = MoneyOperationService.getInstance();
+    }
+
+    @Test
+    void operationsSharingAccountsThroughTransfersMakeOneGroup() {
+        List<List<MoneyOperation>> groups = moneyOperationService.group(List.of(
+                transfer(1, 1, 2),
+                refill(2, 4),
+                transfer(3, 2, 3),
+                withdraw(4, 3),
+                refill(5, 5),
+                transfer(6, 5, 6)));
+
+        assertEquals(List.of(List.of(1, 3, 4), List.of(2), List.of(5, 6)),
+                groups.stream().map(group -> group.stream().map(MoneyOperation::item).toList()).toList());
+    }
+
+    @Test
+    void groupLongerThanLockChunkKeepsBatchOrder() {
+        Integer first = TestDatabase.createAccount(0).getId();
+        Integer second = TestDatabase.createAccount(0).getId();
+        //every transfer needs the refill right before it, 250 operations take three lock chunks of 100
+        List<MoneyOperation> operations = IntStream.rangeClosed(1, 250)
+                .mapToObj(item -> item % 2 == 1
+                        ? new MoneyOperation(item, TransactionType.REFILL, null, first, 1d)
+                        : new MoneyOperation(item, TransactionType.TRANSFER, first, second, 1d))
+                .toList();
+
+        List<OperationResult> results = new ArrayList<>();
+        moneyOperationService.execute(operations, results::add);
+
+        assertEquals(IntStream.rangeClosed(1, 250).boxed().toList(), results.stream().map(OperationResult::item).toList());
+        assertTrue(results.stream().allMatch(OperationResult::isSucceeded));
+        assertEquals(0d, TestDatabase.query(BALANCE_SQL, Double.class, first));
+        assertEquals(125d, TestDatabase.query(BALANCE_SQL, Double.class, second));
+    }
+
+    @Test
+    void failingConsumerStopsBatchWithoutReportingExecutedOperationsAsFailed() {
+        Integer account = TestDatabase.createAccount(0).getId();
+        List<MoneyOperation> operations = IntStream.rangeClosed(1, 150)
+                .mapToObj(item -> new MoneyOperation(item, TransactionType.REFILL, null, account, 1d))
+                .toList();
+        RuntimeException gone = new RuntimeException("client is gone");
+
+        List<OperationResult> results = new ArrayList<>();
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> moneyOperationService.execute(operations, result -> {
+            results.add(result);
+            throw gone;
+        }));
+
+        assertSame(gone, thrown);
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).isSucceeded());
+        //the first lock chunk was executed, the second one was not started
+        assertEquals(100d, TestDatabase.query(BALANCE_SQL, Double.class, account));
+    }
+
+    @Test
+    void batchTextIsNumberedByLines() throws Exception {
+        Integer account = TestDatabase.createAccount(0).getId();
+        String batch = "REFILL;" + account + ";10\nREFILL;" + account + "\n\nwithdraw;" + account + ";4\n";
+
+        List<OperationResult> results = new ArrayList<>();
+        moneyOperationService.execute(new BufferedReader(new StringReader(batch)), results::add);
+
+        assertEquals(List.of(2, 1, 4), results.stream().map(OperationResult::item).toList());
+        assertEquals("Malformed operation: REFILL;" + account, results.get(0).error());
+        assertEquals(6d, TestDatabase.query(BALANCE_SQL, Double.class, account));
+    }
+
+    private MoneyOperation transfer(int item, Integer sender, Integer receiver) {
+        return new MoneyOperation(item, TransactionType.TRANSFER, sender, receiver, 1d);
+    }
+
+    private MoneyOperation refill(int item, Integer receiver) {
+        return new MoneyOperation(item, TransactionType.REFILL, null, receiver, 1d);
+    }
+
+    private MoneyOperation withdraw(int item, Integer sender) {
+        return new MoneyOperation(item, TransactionType.WITHDRAW, sender, null, 1d);
+    }
+}
@@ -0,0 +1,80 @@
+package thread;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReceiptCheckpointTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void idsAreSavedAsRangesAndReadBack() throws Exception {
+        Path file = directory.resolve("receipt.checkpoint");
+        ReceiptCheckpoint checkpoint = new ReceiptCheckpoint(file);
+        checkpoint.add(IntStream.rangeClosed(101, 150).boxed().toList());
+        checkpoint.add(List.of(170));
+        checkpoint.save();
+
+        assertEquals("unprinted\n101-150,170", Files.readString(file, StandardCharsets.UTF_8));
+        List<Integer> previous = new ArrayList<>();
+        assertNull(new ReceiptCheckpoint(file).read(previous));
+        assertEquals(51, previous.size());
+        assertEquals(101, previous.get(0));
+        assertEquals(170, previous.get(50));
+    }
+
+    @Test
+    void oldFormatIsReturnedAsLastPrintedId() throws Exception {
+        Path file = directory.resolve("receipt.checkpoint");
+        Files.writeString(file, "42", StandardCharsets.UTF_8);
+
+        List<Integer> previous = new ArrayList<>();
+        assertEquals(42, new ReceiptCheckpoint(file).read(previous));
+        assertTrue(previous.isEmpty());
+    }
+
+    @Test
+    void recoveryKeepsFoundIdsAndIdsOfThisRun() {
+        Path file = directory.resolve("receipt.checkpoint");
+        ReceiptCheckpoint crashed = new ReceiptCheckpoint(file);
+        crashed.add(List.of(1, 2, 3, 4, 5));
+        crashed.save();
+
+        ReceiptCheckpoint restarted = new ReceiptCheckpoint(file);
+        List<Integer> previous = new ArrayList<>();
+        restarted.read(previous);
+        //block reserved by this run before recovery finished
+        restarted.add(List.of(10, 11));
+        restarted.recovered(previous, Set.of(2, 4));
+
+        List<Integer> saved = new ArrayList<>();
+        new ReceiptCheckpoint(file).read(saved);
+        assertEquals(List.of(2, 4, 10, 11), saved);
+    }
+
+    @Test
+    void removedIdLeavesWithNextSave() {
+        Path file = directory.resolve("receipt.checkpoint");
+        ReceiptCheckpoint checkpoint = new ReceiptCheckpoint(file);
+        checkpoint.add(List.of(7, 8, 9));
+        checkpoint.save();
+        checkpoint.remove(8);
+        checkpoint.save();
+
+        List<Integer> saved = new ArrayList<>();
+        new ReceiptCheckpoint(file).read(saved);
+        assertEquals(List.of(7, 9), saved);
+    }
+}
@@ -0,0 +1,127 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReceiptArchiveTest {
+    private static final int RECORD_HEADER = Long.BYTES + Integer.BYTES;
+    private static final int INDEX_ENTRY = Long.BYTES * 2 + Integer.BYTES * 2;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordWithoutIndexEntryIsCutOnOpen() throws IOException {
+        ReceiptArchive archive = new ReceiptArchive(directory.toFile(), 1024 * 1024, 1, 4);
+        archive.append(1, 10, 20, "first");
+        archive.append(2, 10, 20, "second");
+        archive.close();
+        long end = Files.size(segment(0));
+
+        //crash after half of the next record reached the segment, before its index entry
+        append(segment(0), ByteBuffer.allocate(RECORD_HEADER + 2).putLong(3).putInt(100).put((byte) 't').put((byte) 'o').flip());
+
+        ReceiptArchive reopened = new ReceiptArchive(directory.toFile(), 1024 * 1024, 1, 4);
+        assertEquals(end, Files.size(segment(0)));
+        assertEquals(2, reopened.size());
+        reopened.append(3, 10, 20, "third");
+        assertEquals(Optional.of("second"), reopened.read(2));
+        assertEquals(Optional.of("third"), reopened.read(3));
+        reopened.close();
+    }
+
+    @Test
+    void indexEntryOfTornRecordIsDropped() throws IOException {
+        ReceiptArchive archive = new ReceiptArchive(directory.toFile(), 1024 * 1024, 1, 4);
+        archive.append(1, 10, 20, "first");
+        archive.append(2, 10, 20, "second");
+        archive.close();
+        long end = Files.size(segment(0));
+
+        //index entry reached disk, but only the header of its record did
+        append(segment(0), ByteBuffer.allocate(RECORD_HEADER).putLong(3).putInt(100).flip());
+        append(index(0), ByteBuffer.allocate(INDEX_ENTRY).putLong(3).putLong(end).putInt(10).putInt(20).flip());
+
+        ReceiptArchive reopened = new ReceiptArchive(directory.toFile(), 1024 * 1024, 1, 4);
+        assertEquals(2, reopened.size());
+        assertEquals(Optional.empty(), reopened.read(3));
+        assertEquals(List.of(1L, 2L), reopened.findByAccount(10));
+        assertEquals(end, Files.size(segment(0)));
+        assertEquals(2L * INDEX_ENTRY, Files.size(index(0)));
+
+        reopened.append(3, 10, 20, "third");
+        reopened.close();
+        ReceiptArchive again = new ReceiptArchive(directory.toFile(), 1024 * 1024, 1, 4);
+        assertEquals(Optional.of("third"), again.read(3));
+        again.close();
+    }
+
+    @Test
+    void partialIndexEntryIsCutOnOpen() throws IOException {
+        ReceiptArchive archive = new ReceiptArchive(directory.toFile(), 1024 * 1024, 1, 4);
+        archive.append(1, 10, 20, "first");
+        archive.close();
+
+        append(index(0), ByteBuffer.allocate(INDEX_ENTRY / 2).putLong(2).flip());
+
+        ReceiptArchive reopened = new ReceiptArchive(directory.toFile(), 1024 * 1024, 1, 4);
+        assertEquals((long) INDEX_ENTRY, Files.size(index(0)));
+        reopened.append(2, 10, 20, "second");
+        reopened.close();
+        ReceiptArchive again = new ReceiptArchive(directory.toFile(), 1024 * 1024, 1, 4);
+        assertEquals(Optional.of("first"), again.read(1));
+        assertEquals(Optional.of("second"), again.read(2));
+        again.close();
+    }
+
+    @Test
+    void receiptsOfFullAndActiveSegmentsAreRead() {
+        ReceiptArchive archive = new ReceiptArchive(directory.toFile(), 64, 0, 2);
+        for (long receiptNo = 1; receiptNo <= 10; receiptNo++) {
+            archive.append(receiptNo, (int) receiptNo, null, "receipt number " + receiptNo);
+        }
+
+        for (long receiptNo = 1; receiptNo <= 10; receiptNo++) {
+            assertEquals(Optional.of("receipt number " + receiptNo), archive.read(receiptNo));
+        }
+        assertEquals(List.of(4L), archive.findByAccount(4));
+        archive.close();
+    }
+
+    @Test
+    void activeSegmentIsRemappedForReceiptsPastMappedPart() {
+        ReceiptArchive archive = new ReceiptArchive(directory.toFile(), 1024 * 1024, 0, 4);
+        archive.append(1, 10, 20, "first");
+        assertEquals(Optional.of("first"), archive.read(1));
+
+        archive.append(2, 10, 20, "second");
+        assertEquals(Optional.of("second"), archive.read(2));
+        assertEquals(Optional.of("first"), archive.read(1));
+        archive.close();
+    }
+
+    private Path segment(int no) {
+        return directory.resolve("segment" + no + ".log");
+    }
+
+    private Path index(int no) {
+        return directory.resolve("segment" + no + ".idx");
+    }
+
+    private void append(Path file, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package util;
+
+import dao.AccountDao;
+import entity.Account;
+import entity.Currency;
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+
+/**
+ * Database of tests, named by db.url of test application.properties. It is created from schema.sql once per run,
+ * before any DAO is loaded: DAOs build their caches and indexes at start and tests only add to them
+ */
+@UtilityClass
+public class TestDatabase {
+    private Boolean available;
+
+    /**
+     * Creates tables of test database if it is not done yet
+     *
+     * @return false if PostgreSQL of db.url can not be reached, tests using database are skipped then
+     */
+    public static synchronized boolean init() {
+        if (available == null) available = create();
+        return available;
+    }
+
+    /**
+     * Creates account of test bank and user through AccountDao, so it is in DAO caches
+     *
+     * @param balance opening balance
+     * @return saved account
+     */
+    public static Account createAccount(double balance) {
+        Account account = new Account();
+        account.setCurrency(Currency.BYN);
+        account.setOpeningDate(LocalDateTime.now());
+        account.setBalance(balance);
+        account.setBankId(1);
+        account.setAppUserId(1);
+        return AccountDao.getInstance().save(account);
+    }
+
+    /**
+     * Runs statement straight on database, bypassing DAOs and their caches
+     */
+    public static int update(String sql, Object... params) {
+        try (Connection connection = connect();
+             PreparedStatement statement = prepare(connection, sql, params)) {
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads first column of first row straight from database, bypassing DAOs and their caches
+     *
+     * @return value, null if there is no row
+     */
+    public static <T> T query(String sql, Class<T> type, Object... params) {
+        try (Connection connection = connect();
+             PreparedStatement statement = prepare(connection, sql, params)) {
+            ResultSet resultSet = statement.executeQuery();
+            return resultSet.next() ? resultSet.getObject(1, type) : null;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean create() {
+        String url = PropertiesUtil.get("db.url");
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        try (Connection connection = DriverManager.getConnection(url.substring(0, url.lastIndexOf('/') + 1) + "postgres",
+                PropertiesUtil.get("db.user"), PropertiesUtil.get("db.password"));
+             Statement statement = connection.createStatement()) {
+            ResultSet resultSet = statement.executeQuery("SELECT 1 FROM pg_database WHERE datname = '" + name + "'");
+            if (!resultSet.next()) statement.execute("CREATE DATABASE " + name);
+        } catch (SQLException e) {
+            System.out.println("Test database is not available, tests using it are skipped: " + e.getMessage());
+            return false;
+        }
+
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             InputStream schema = TestDatabase.class.getClassLoader().getResourceAsStream("schema.sql")) {
+            statement.execute(new String(schema.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException(e);
+        }
+        return true;
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(PropertiesUtil.get("db.url"),
+                PropertiesUtil.get("db.user"), PropertiesUtil.get("db.password"));
+    }
+
+    private PreparedStatement prepare(Connection connection, String sql, Object... params) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        for (int i = 0; i < params.length; i++) {
+            statement.setObject(i + 1, params[i]);
+        }
+        return statement;
+    }
+}
@@ -0,0 +1,35 @@
+DROP TABLE IF EXISTS transaction;
+DROP TABLE IF EXISTS account;
+DROP TABLE IF EXISTS bank;
+DROP TABLE IF EXISTS appuser;
+
+CREATE TABLE appuser (
+    id       serial PRIMARY KEY,
+    fullname character varying(128)
+);
+
+CREATE TABLE bank (
+    id   serial PRIMARY KEY,
+    name character varying(128)
+);
+
+CREATE TABLE account (
+    id          serial PRIMARY KEY,
+    currency    character varying(16)       NOT NULL,
+    openingdate timestamp without time zone NOT NULL,
+    balance     double precision,
+    bankid      integer                     NOT NULL REFERENCES bank (id),
+    appuserid   integer                     NOT NULL REFERENCES appuser (id)
+);
+
+CREATE TABLE transaction (
+    id            serial PRIMARY KEY,
+    date          timestamp without time zone NOT NULL,
+    type          character varying(32)       NOT NULL,
+    receiveraccid integer REFERENCES account (id),
+    senderaccid   integer REFERENCES account (id),
+    total         double precision            NOT NULL
+);
+
+INSERT INTO appuser(fullname) VALUES ('Test User');
+INSERT INTO bank(name) VALUES ('Test Bank');